@@ -0,0 +1,283 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.util.*;
+
+// Immutable sorted map over parallel key and value arrays.
+// Keys are an ArraySet, so searches and views are the ones of ArraySet; views of the map pair a key view
+// with the shared value list, mapping positions through the backing index of the key view.
+// Entries are created only when requested and are never stored.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class ArrayMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+    private final ArraySet<K> keys;
+    private final List<V> values;
+
+    public ArrayMap() {
+        this(Collections.emptyMap(), null);
+    }
+
+    public ArrayMap(Comparator<? super K> comparator) {
+        this(Collections.emptyMap(), comparator);
+    }
+
+    public ArrayMap(Map<? extends K, ? extends V> map) {
+        this(map, null);
+    }
+
+    // Sorted maps with the same order are copied as is; of keys equal by comparator the first one is kept
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ArrayMap(Map<? extends K, ? extends V> map, Comparator<? super K> comparator) {
+        Map.Entry<K, V>[] entries = map.entrySet().toArray(new Map.Entry[0]);
+        Comparator<? super K> order = comparator == null ? (Comparator<? super K>) Comparator.naturalOrder() : comparator;
+        boolean sorted = map instanceof SortedMap
+                && Objects.equals(validateComparator(((SortedMap<K, V>) map).comparator()), validateComparator(comparator));
+        if (!sorted) {
+            Arrays.sort(entries, Map.Entry.comparingByKey(order));
+        }
+
+        K[] keyArray = (K[]) new Object[entries.length];
+        V[] valueArray = (V[]) new Object[entries.length];
+        int size = 0;
+        for (Map.Entry<K, V> entry : entries) {
+            K key = Objects.requireNonNull(entry.getKey());
+            if (size == 0 || order.compare(keyArray[size - 1], key) != 0) {
+                keyArray[size] = key;
+                valueArray[size++] = entry.getValue();
+            }
+        }
+        this.keys = ArraySet.view(Arrays.asList(Arrays.copyOf(keyArray, size)), comparator);
+        this.values = Arrays.asList(Arrays.copyOf(valueArray, size));
+    }
+
+    private ArrayMap(ArraySet<K> keys, List<V> values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    private static <K> Comparator<? super K> validateComparator(Comparator<? super K> comparator) {
+        return Comparator.naturalOrder().equals(comparator) ? null : comparator;
+    }
+
+    private V value(int position) {
+        return values.get(keys.backingIndex(position));
+    }
+
+    private Entry<K, V> entry(int position) {
+        return new SimpleImmutableEntry<>(keys.select(position), value(position));
+    }
+
+    private Entry<K, V> nullableEntry(int position) {
+        return (0 <= position && position < size()) ? entry(position) : null;
+    }
+
+    private K nullableKey(int position) {
+        return (0 <= position && position < size()) ? keys.select(position) : null;
+    }
+
+    @Override
+    public V get(Object key) {
+        int position = keys.positionOf(key);
+        return position >= 0 ? value(position) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    public int size() {
+        return keys.size();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<>() {
+                    private int position;
+
+                    @Override
+                    public boolean hasNext() {
+                        return position < size();
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return entry(position++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new ValueList();
+    }
+
+    private class ValueList extends AbstractList<V> implements RandomAccess {
+        @Override
+        public V get(int index) {
+            return value(Objects.checkIndex(index, size()));
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return keys;
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return keys;
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return keys.descendingSet();
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return nullableEntry(keys.position(key, false, true));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keys.lower(key);
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return nullableEntry(keys.position(key, true, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keys.floor(key);
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return nullableEntry(keys.position(key, true, false));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keys.ceiling(key);
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return nullableEntry(keys.position(key, false, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keys.higher(key);
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return nullableEntry(0);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return nullableEntry(size() - 1);
+    }
+
+    @Override
+    public K firstKey() {
+        return keys.first();
+    }
+
+    @Override
+    public K lastKey() {
+        return keys.last();
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return keys.comparator();
+    }
+
+    @Override
+    public ArrayMap<K, V> descendingMap() {
+        return new ArrayMap<>(keys.descendingSet(), values);
+    }
+
+    @Override
+    public ArrayMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return new ArrayMap<>(keys.subSet(fromKey, fromInclusive, toKey, toInclusive), values);
+    }
+
+    @Override
+    public ArrayMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new ArrayMap<>(keys.headSet(toKey, inclusive), values);
+    }
+
+    @Override
+    public ArrayMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new ArrayMap<>(keys.tailSet(fromKey, inclusive), values);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -1,9 +1,12 @@
 package ru.ifmo.rain.dolzhanskii.arrayset;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
 public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final int GALLOP_RATIO = 16;
+
     private final ReversibleList<E> array;
     private final Comparator<? super E> comparator;
 
@@ -28,16 +31,48 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
-        NavigableSet<E> tmp = new TreeSet<>(comparator);
-        tmp.addAll(collection);
-        array = new ReversibleList<>(tmp);
         this.comparator = validateComparator(comparator);
+        array = new ReversibleList<>(sortedDistinct(collection), false);
+    }
+
+    // Sorted sets with the same order are copied as is, anything else is sorted and deduplicated in place.
+    // The sort is stable and runs in linear time on presorted input; the first of equal elements is kept.
+    @SuppressWarnings("unchecked")
+    private List<E> sortedDistinct(Collection<? extends E> collection) {
+        if (collection instanceof SortedSet
+                && Objects.equals(validateComparator(((SortedSet<E>) collection).comparator()), comparator)) {
+            return List.copyOf(collection);
+        }
+
+        E[] elements = (E[]) collection.toArray();
+        for (E element : elements) {
+            Objects.requireNonNull(element);
+        }
+        Arrays.sort(elements, comparator);
+
+        int size = 0;
+        for (E element : elements) {
+            if (size == 0 || compare(elements[size - 1], element) != 0) {
+                elements[size++] = element;
+            }
+        }
+        return Arrays.asList(size == elements.length ? elements : Arrays.copyOf(elements, size));
+    }
+
+    // Trusts the caller that elements are strictly increasing in natural order
+    public static <E> ArraySet<E> ofSorted(E[] elements) {
+        return ofSorted(null, elements);
+    }
+
+    // Trusts the caller that elements are strictly increasing according to comparator
+    public static <E> ArraySet<E> ofSorted(Comparator<? super E> comparator, E[] elements) {
+        return view(List.copyOf(Arrays.asList(elements)), comparator);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public boolean contains(Object o) {
-        return Collections.binarySearch(array, (E) Objects.requireNonNull(o), comparator) >= 0;
+        return search((E) Objects.requireNonNull(o)) >= 0;
     }
 
     @Override
@@ -53,7 +88,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     // lower: -1 => e less than all elements
     // upper: size => e greater than all elements
     private int index(E e, boolean inclusive, boolean lower) {
-        int index = Collections.binarySearch(array, Objects.requireNonNull(e), comparator);
+        int index = search(Objects.requireNonNull(e));
         if (index < 0) {
             return lower ? (-index - 1 - 1) : (-index - 1);
         } else {
@@ -85,6 +120,86 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return nullableGet(index(e, true, false));
     }
 
+    // Position of o in this set's order, negative if absent, as returned by Collections.binarySearch
+    @SuppressWarnings("unchecked")
+    int positionOf(Object o) {
+        return search((E) Objects.requireNonNull(o));
+    }
+
+    // Position of the lower, floor, higher or ceiling element, -1 or size() if there is none
+    int position(E e, boolean inclusive, boolean lower) {
+        return index(e, inclusive, lower);
+    }
+
+    // Index in the list shared by all views of the element at the given position
+    int backingIndex(int position) {
+        return array.index(position);
+    }
+
+    // Number of elements less than e
+    public int rank(E e) {
+        return index(e, true, false);
+    }
+
+    // k-th smallest element in this set's order, starting from zero
+    public E select(int k) {
+        return array.get(k);
+    }
+
+    public int countRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException();
+        }
+        return Math.max(0, index(toElement, toInclusive, true) - index(fromElement, fromInclusive, false) + 1);
+    }
+
+    // Ranks of keys sorted in this set's order, found in a single galloping pass
+    public int[] rankAll(E[] sortedKeys) {
+        int[] ranks = new int[sortedKeys.length];
+        int index = 0;
+        for (int i = 0; i < sortedKeys.length; i++) {
+            checkSorted(i == 0 ? null : sortedKeys[i - 1], sortedKeys[i]);
+            index = gallop(index, sortedKeys[i]);
+            ranks[i] = index;
+        }
+        return ranks;
+    }
+
+    // Keys must be sorted in this set's order
+    public boolean containsAll(E[] sortedKeys) {
+        return containsAllSorted(Arrays.asList(sortedKeys));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if (c instanceof SortedSet && Objects.equals(validateComparator(((SortedSet<E>) c).comparator()), comparator)) {
+            return containsAllSorted((SortedSet<E>) c);
+        }
+        return super.containsAll(c);
+    }
+
+    private boolean containsAllSorted(Iterable<E> sortedKeys) {
+        int index = 0;
+        E previous = null;
+        for (E key : sortedKeys) {
+            checkSorted(previous, key);
+            index = gallop(index, key);
+            if (index == size() || compare(array.get(index), key) != 0) {
+                return false;
+            }
+            previous = key;
+        }
+        return true;
+    }
+
+    private void checkSorted(E previous, E key) {
+        Objects.requireNonNull(key);
+        if (previous != null && compare(previous, key) > 0) {
+            throw new IllegalArgumentException("Keys are not sorted");
+        }
+    }
+
     @Override
     public boolean addAll(Collection<? extends E> c) {
         throw new UnsupportedOperationException();
@@ -120,52 +235,119 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         throw new UnsupportedOperationException();
     }
 
+    // Window [from, to) of a shared backing list, read backwards if flipped.
+    // Views of views point at the same backing list, so any nesting depth costs a single get.
     private class ReversibleList<T> extends AbstractList<T> implements RandomAccess {
         private final List<T> array;
-        private boolean flip;
-
-        private ReversibleList(List<T> list, boolean flip) {
-            this.array = Collections.unmodifiableList(list);
+        private final int from;
+        private final int to;
+        private final boolean flip;
+
+        private ReversibleList(List<T> array, int from, int to, boolean flip) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
             this.flip = flip;
         }
 
-        ReversibleList(Collection<T> collection) {
-            this.array = List.copyOf(collection);
-            this.flip = false;
+        private ReversibleList(List<T> list, boolean flip) {
+            this(list, 0, list.size(), flip);
         }
 
         ReversibleList(ReversibleList<T> reverseArray, boolean flip) {
-            this.array = reverseArray.array;
-            this.flip = reverseArray.flip ^ flip;
+            this(reverseArray.array, reverseArray.from, reverseArray.to, reverseArray.flip ^ flip);
         }
 
         private int index(int index) {
-            return flip ? size() - 1 - index : index;
+            return flip ? to - 1 - index : from + index;
         }
 
-        // WARNING: post-verification quickfix, could be implemented better
         @Override
         public ReversibleList<T> subList(int fromIndex, int toIndex) {
+            Objects.checkFromToIndex(fromIndex, toIndex, size());
             if (flip) {
-                return new ReversibleList<>(array.subList(index(toIndex - 1), index(fromIndex) + 1), flip);
+                return new ReversibleList<>(array, to - toIndex, to - fromIndex, true);
             } else {
-                return new ReversibleList<>(array.subList(index(fromIndex), index(toIndex)), flip);
+                return new ReversibleList<>(array, from + fromIndex, from + toIndex, false);
             }
         }
 
-        public void flip() {
-            flip ^= true;
+        @Override
+        public T get(int index) {
+            return array.get(index(Objects.checkIndex(index, size())));
         }
 
+        @SuppressWarnings("unchecked")
         @Override
-        public T get(int index) {
-            return array.get(index(index));
+        public Iterator<T> iterator() {
+            if (array instanceof Streamable) {
+                return ((Streamable<T>) array).iterator(from, to, flip);
+            }
+            return super.iterator();
         }
 
         @Override
         public int size() {
-            return array.size();
+            return to - from;
+        }
+    }
+
+    // Splits index ranges in halves, so parallel streams get even shares of any view
+    private class ArraySpliterator implements Spliterator<E> {
+        private int index;
+        private final int fence;
+
+        ArraySpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (index < fence) {
+                action.accept(array.get(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            for (; index < fence; index++) {
+                action.accept(array.get(index));
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            Spliterator<E> prefix = new ArraySpliterator(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
         }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator;
+        }
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ArraySpliterator(0, size());
     }
 
     private ArraySet(ReversibleList<E> reversibleArray, Comparator<? super E> comparator) {
@@ -173,8 +355,50 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         this.comparator = comparator;
     }
 
+    private ArraySet(Comparator<? super E> comparator, List<E> sorted) {
+        this.array = new ReversibleList<>(sorted, false);
+        this.comparator = validateComparator(comparator);
+    }
+
+    // Backing lists that find elements faster than a binary search over get, such as compressed ones
+    interface Searchable<E> {
+        // Same contract as Collections.binarySearch over the whole list in its own ascending order
+        int search(E e);
+    }
+
+    // Backing lists that read runs of elements faster than one get at a time
+    interface Streamable<E> {
+        // Elements of the whole list from fromIndex inclusive to toIndex exclusive, backwards if reversed
+        Iterator<E> iterator(int fromIndex, int toIndex, boolean reversed);
+    }
+
+    // Same contract as Collections.binarySearch
+    @SuppressWarnings("unchecked")
+    private int search(E e) {
+        if (array.array instanceof Searchable) {
+            return searchWindow(((Searchable<E>) array.array).search(e));
+        }
+        return Collections.binarySearch(array, e, comparator);
+    }
+
+    // Maps a search result over the whole backing list to this window, counting from its far end if flipped
+    private int searchWindow(int index) {
+        int less = index >= 0 ? index : -index - 1;
+        int notGreater = index >= 0 ? index + 1 : less;
+        int position = array.flip
+                ? array.to - Math.max(array.from, Math.min(array.to, notGreater))
+                : Math.max(array.from, Math.min(array.to, less)) - array.from;
+        boolean found = index >= 0 && array.from <= index && index < array.to;
+        return found ? position : -position - 1;
+    }
+
+    // Wraps a random access list that is already sorted and free of duplicates, without copying it
+    static <E> ArraySet<E> view(List<E> sorted, Comparator<? super E> comparator) {
+        return new ArraySet<>(comparator, sorted);
+    }
+
     @Override
-    public NavigableSet<E> descendingSet() {
+    public ArraySet<E> descendingSet() {
         return new ArraySet<E>(new ReversibleList<E>(array, true), Collections.reverseOrder(comparator));
     }
 
@@ -183,7 +407,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return descendingSet().iterator();
     }
 
-    private NavigableSet<E> subSetImpl(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+    private ArraySet<E> subSetImpl(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
         Objects.requireNonNull(fromElement);
         Objects.requireNonNull(toElement);
 
@@ -202,7 +426,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+    public ArraySet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
         if (compare(fromElement, toElement) > 0) {
             throw new IllegalArgumentException();
         }
@@ -210,7 +434,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+    public ArraySet<E> headSet(E toElement, boolean inclusive) {
         if (isEmpty()) {
             return this;
         }
@@ -218,7 +442,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+    public ArraySet<E> tailSet(E fromElement, boolean inclusive) {
         if (isEmpty()) {
             return this;
         }
@@ -262,4 +486,83 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
             return array.get(size() - 1);
         }
     }
+
+    // Merge-based set algebra. Both sets must share the comparator; the result uses it too.
+    // Runs of the larger set are skipped with galloping search once sizes differ by GALLOP_RATIO or more.
+    public static <E> ArraySet<E> union(ArraySet<E> first, ArraySet<E> second) {
+        return merge(first, second, true, true, true);
+    }
+
+    public static <E> ArraySet<E> intersect(ArraySet<E> first, ArraySet<E> second) {
+        return merge(first, second, false, true, false);
+    }
+
+    public static <E> ArraySet<E> difference(ArraySet<E> first, ArraySet<E> second) {
+        return merge(first, second, true, false, false);
+    }
+
+    private static <E> ArraySet<E> merge(ArraySet<E> first, ArraySet<E> second,
+                                         boolean firstOnly, boolean both, boolean secondOnly) {
+        if (!Objects.equals(first.comparator, second.comparator)) {
+            throw new IllegalArgumentException("Sets are ordered by different comparators");
+        }
+
+        boolean gallop = Math.max(first.size(), second.size()) / GALLOP_RATIO >= Math.min(first.size(), second.size());
+        List<E> result = new ArrayList<>((firstOnly ? first.size() : 0) + (secondOnly ? second.size() : 0)
+                + (both && !firstOnly && !secondOnly ? Math.min(first.size(), second.size()) : 0));
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            E e1 = first.array.get(i);
+            E e2 = second.array.get(j);
+            int compared = first.compare(e1, e2);
+            if (compared < 0) {
+                int next = gallop ? first.gallop(i + 1, e2) : i + 1;
+                copy(first, i, next, firstOnly, result);
+                i = next;
+            } else if (compared > 0) {
+                int next = gallop ? second.gallop(j + 1, e1) : j + 1;
+                copy(second, j, next, secondOnly, result);
+                j = next;
+            } else {
+                if (both) {
+                    result.add(e1);
+                }
+                i++;
+                j++;
+            }
+        }
+        copy(first, i, first.size(), firstOnly, result);
+        copy(second, j, second.size(), secondOnly, result);
+        return new ArraySet<>(first.comparator, result);
+    }
+
+    private static <E> void copy(ArraySet<E> set, int fromIndex, int toIndex, boolean keep, List<E> result) {
+        if (keep) {
+            for (int i = fromIndex; i < toIndex; i++) {
+                result.add(set.array.get(i));
+            }
+        }
+    }
+
+    // First index at or after fromIndex whose element is not less than e: exponential probes, then binary search
+    private int gallop(int fromIndex, E e) {
+        int low = fromIndex;
+        long bound = 1;
+        while (fromIndex + bound - 1 < size() && compare(array.get((int) (fromIndex + bound - 1)), e) < 0) {
+            low = (int) (fromIndex + bound);
+            bound <<= 1;
+        }
+
+        int high = (int) Math.min(fromIndex + bound - 1, size());
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(array.get(mid), e) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
 }
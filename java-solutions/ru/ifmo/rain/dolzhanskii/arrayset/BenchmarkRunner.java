@@ -0,0 +1,36 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+// Minimal warmup-then-measure loop shared by the array set benchmarks
+class BenchmarkRunner {
+    static final int DEFAULT_WARMUP_ITERATIONS = 3;
+
+    // Returns a checksum of the results, so that the work cannot be optimized away
+    interface Operation {
+        long run();
+    }
+
+    private static volatile long sink;
+
+    private BenchmarkRunner() {
+    }
+
+    // Returns average seconds per iteration
+    static double measure(int warmupIterations, int iterations, Operation operation) {
+        long checksum = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            checksum += operation.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += operation.run();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9 / iterations;
+        sink = checksum;
+        return seconds;
+    }
+
+    static void report(String name, double seconds, long operations) {
+        System.out.printf("%-32s %10.1f ns/op%n", name, seconds * 1e9 / operations);
+    }
+}
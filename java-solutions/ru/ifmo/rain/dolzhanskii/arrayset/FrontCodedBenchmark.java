@@ -0,0 +1,100 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.function.Supplier;
+
+// Compares heap footprint and lookups of front-coded string sets and ArraySet<String> over URL-like strings.
+// Heap sizes are measured as used memory after forced collections, so they are approximate.
+// Usage: java FrontCodedBenchmark [SIZE [QUERIES [ITERATIONS]]]
+class FrontCodedBenchmark {
+    private static final int DEFAULT_SIZE = 1_000_000;
+    private static final int DEFAULT_QUERIES = 1_000_000;
+    private static final int DEFAULT_ITERATIONS = 5;
+    private static final String[] WORDS = {"api", "v1", "v2", "users", "items", "search", "static", "images", "docs"};
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_QUERIES;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ITERATIONS;
+
+        Random random = new Random(size);
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            strings.add(url(random));
+        }
+        // Half of the keys are present, half are most likely absent
+        String[] keys = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            keys[i] = i % 2 == 0 ? strings.get(random.nextInt(size)) : url(random);
+        }
+
+        NavigableSet<String> plain = measureHeap("ArraySet<String>", () -> new ArraySet<>(copyOf(strings)));
+        NavigableSet<String> frontCoded = measureHeap("FrontCodedStrings", () -> FrontCodedStrings.setOf(copyOf(strings)));
+        System.out.println(plain.size() + " elements, " + queries + " queries");
+
+        report("contains ArraySet<String>", iterations, queries, () -> contains(plain, keys));
+        report("contains FrontCodedStrings", iterations, queries, () -> contains(frontCoded, keys));
+        report("ceiling ArraySet<String>", iterations, queries, () -> ceiling(plain, keys));
+        report("ceiling FrontCodedStrings", iterations, queries, () -> ceiling(frontCoded, keys));
+    }
+
+    private static String url(Random random) {
+        StringBuilder builder = new StringBuilder("https://");
+        builder.append(WORDS[random.nextInt(3)]).append(".example.com");
+        int depth = 1 + random.nextInt(4);
+        for (int i = 0; i < depth; i++) {
+            builder.append('/').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.append('/').append(random.nextInt(1_000_000)).toString();
+    }
+
+    // Fresh string instances, so that a set does not share them with the input and its size is counted in full
+    private static List<String> copyOf(List<String> strings) {
+        List<String> copy = new ArrayList<>();
+        for (String string : strings) {
+            copy.add(new String(string));
+        }
+        return copy;
+    }
+
+    private static long contains(NavigableSet<String> set, String[] keys) {
+        long found = 0;
+        for (String key : keys) {
+            found += set.contains(key) ? 1 : 0;
+        }
+        return found;
+    }
+
+    private static long ceiling(NavigableSet<String> set, String[] keys) {
+        long sum = 0;
+        for (String key : keys) {
+            String ceiling = set.ceiling(key);
+            sum += ceiling == null ? 0 : ceiling.length();
+        }
+        return sum;
+    }
+
+    private static <T> T measureHeap(String name, Supplier<T> supplier) {
+        long before = usedHeap();
+        T result = supplier.get();
+        long after = usedHeap();
+        System.out.printf("%-32s %10.1f MiB%n", name, (after - before) / 1024.0 / 1024.0);
+        return result;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void report(String name, int iterations, int queries, BenchmarkRunner.Operation operation) {
+        BenchmarkRunner.report(name, BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS,
+                iterations, operation), queries);
+    }
+}
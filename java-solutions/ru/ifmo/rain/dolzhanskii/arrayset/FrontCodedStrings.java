@@ -0,0 +1,237 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+// Immutable sorted sets of strings front coded in blocks over a single byte[].
+// Every block of BLOCK_SIZE strings starts with a full head string, the rest store the length of the prefix
+// shared with the previous string and the remaining suffix. Searches run a binary search over the heads,
+// then a linear scan inside one block, comparing encoded bytes without decoding strings.
+// Strings are encoded char by char in the UTF-8 style, so unsigned byte order is the order of String.compareTo.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class FrontCodedStrings {
+    static final int BLOCK_SIZE = 16;
+
+    private FrontCodedStrings() {
+    }
+
+    // Elements are decoded on access, the set itself keeps only the encoded bytes and block offsets
+    public static ArraySet<String> setOf(Collection<String> strings) {
+        return ArraySet.view(new Encoded(new ArraySet<>(strings)), null);
+    }
+
+    private static class Encoded extends AbstractList<String>
+            implements RandomAccess, ArraySet.Searchable<String>, ArraySet.Streamable<String> {
+        private static final byte[] EMPTY = new byte[0];
+
+        private final byte[] data;
+        private final int[] blocks;
+        private final int size;
+
+        Encoded(SortedSet<String> sorted) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            blocks = new int[(sorted.size() + BLOCK_SIZE - 1) / BLOCK_SIZE];
+            size = sorted.size();
+
+            byte[] previous = new byte[0];
+            int index = 0;
+            for (String string : sorted) {
+                byte[] current = encode(string);
+                int prefix = 0;
+                if (index % BLOCK_SIZE == 0) {
+                    blocks[index / BLOCK_SIZE] = outputStream.size();
+                } else {
+                    int limit = Math.min(previous.length, current.length);
+                    while (prefix < limit && previous[prefix] == current[prefix]) {
+                        prefix++;
+                    }
+                }
+                writeVarint(outputStream, prefix);
+                writeVarint(outputStream, current.length - prefix);
+                outputStream.write(current, prefix, current.length - prefix);
+                previous = current;
+                index++;
+            }
+            data = outputStream.toByteArray();
+        }
+
+        @Override
+        public String get(int index) {
+            Objects.checkIndex(index, size);
+            Cursor cursor = new Cursor(blocks[index / BLOCK_SIZE]);
+            for (int i = index - index % BLOCK_SIZE; i <= index; i++) {
+                cursor.next();
+            }
+            return cursor.decode();
+        }
+
+        // Each block is rebuilt once and its strings are handed out in either direction
+        @Override
+        public Iterator<String> iterator(int fromIndex, int toIndex, boolean reversed) {
+            return new Iterator<>() {
+                private final String[] block = new String[BLOCK_SIZE];
+                private int loaded = -1;
+                private int index = reversed ? toIndex - 1 : fromIndex;
+
+                @Override
+                public boolean hasNext() {
+                    return fromIndex <= index && index < toIndex;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    if (index / BLOCK_SIZE != loaded) {
+                        load(index / BLOCK_SIZE);
+                    }
+                    String string = block[index % BLOCK_SIZE];
+                    index += reversed ? -1 : 1;
+                    return string;
+                }
+
+                // Only strings inside the range are decoded
+                private void load(int blockIndex) {
+                    Cursor cursor = new Cursor(blocks[blockIndex]);
+                    int first = blockIndex * BLOCK_SIZE;
+                    int end = Math.min(toIndex, first + BLOCK_SIZE);
+                    for (int i = first; i < end; i++) {
+                        cursor.next();
+                        block[i - first] = i >= fromIndex ? cursor.decode() : null;
+                    }
+                    loaded = blockIndex;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int search(String e) {
+            byte[] key = encode(e);
+
+            // Last block whose head is not greater than the key
+            int low = 0;
+            int high = blocks.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                Cursor cursor = new Cursor(blocks[mid]);
+                cursor.readVarint();
+                int length = cursor.readVarint();
+                int compared = Arrays.compareUnsigned(data, cursor.position, cursor.position + length, key, 0, key.length);
+                if (compared == 0) {
+                    return mid * BLOCK_SIZE;
+                } else if (compared < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (high < 0) {
+                return -1;
+            }
+
+            Cursor cursor = new Cursor(blocks[high]);
+            int end = Math.min(size, (high + 1) * BLOCK_SIZE);
+            for (int i = high * BLOCK_SIZE; i < end; i++) {
+                cursor.next();
+                int compared = Arrays.compareUnsigned(cursor.current, 0, cursor.length, key, 0, key.length);
+                if (compared == 0) {
+                    return i;
+                } else if (compared > 0) {
+                    return -i - 1;
+                }
+            }
+            return -end - 1;
+        }
+
+        // Reads entries one after another, rebuilding each string over the previous one.
+        // The buffer grows with the strings actually read, so one long string slows down only its own block.
+        private class Cursor {
+            private int position;
+            private byte[] current = EMPTY;
+            private int length;
+
+            Cursor(int position) {
+                this.position = position;
+            }
+
+            int readVarint() {
+                int value = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[position++];
+                    value |= (b & 0x7f) << shift;
+                    if (b >= 0) {
+                        return value;
+                    }
+                }
+            }
+
+            void next() {
+                int prefix = readVarint();
+                int suffix = readVarint();
+                if (prefix + suffix > current.length) {
+                    current = Arrays.copyOf(current, Math.max(prefix + suffix, 2 * current.length));
+                }
+                System.arraycopy(data, position, current, prefix, suffix);
+                position += suffix;
+                length = prefix + suffix;
+            }
+
+            String decode() {
+                return FrontCodedStrings.decode(current, length);
+            }
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream outputStream, int value) {
+        while ((value & ~0x7f) != 0) {
+            outputStream.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        outputStream.write(value);
+    }
+
+    // Surrogates are encoded one by one like any other char, which keeps the order of UTF-16 code units
+    private static byte[] encode(String string) {
+        byte[] bytes = new byte[3 * string.length()];
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xc0 | c >> 6);
+                bytes[length++] = (byte) (0x80 | c & 0x3f);
+            } else {
+                bytes[length++] = (byte) (0xe0 | c >> 12);
+                bytes[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+                bytes[length++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+    private static String decode(byte[] bytes, int length) {
+        char[] chars = new char[length];
+        int size = 0;
+        for (int i = 0; i < length; ) {
+            int b = bytes[i] & 0xff;
+            if (b < 0x80) {
+                chars[size++] = (char) b;
+                i++;
+            } else if (b < 0xe0) {
+                chars[size++] = (char) ((b & 0x1f) << 6 | bytes[i + 1] & 0x3f);
+                i += 2;
+            } else {
+                chars[size++] = (char) ((b & 0x0f) << 12 | (bytes[i + 1] & 0x3f) << 6 | bytes[i + 2] & 0x3f);
+                i += 3;
+            }
+        }
+        return new String(chars, 0, size);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.util.*;
+
+// Immutable sorted set of ints backed by a plain int[] and searched without boxing.
+// Primitive lookups throw NoSuchElementException if there is no such element, the index lookups
+// of PrimitiveArraySet return -1 instead, the boxed NavigableSet view returns null as usual.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class IntArraySet extends PrimitiveArraySet {
+    private final int[] array;
+
+    public IntArraySet(int... elements) {
+        int[] sorted = elements.clone();
+        Arrays.sort(sorted);
+
+        int size = 0;
+        for (int element : sorted) {
+            if (size == 0 || sorted[size - 1] != element) {
+                sorted[size++] = element;
+            }
+        }
+        this.array = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    @Override
+    long key(int index) {
+        return array[index];
+    }
+
+    // Keys outside the int range are below or above all elements
+    @Override
+    int binaryLowerBound(long key) {
+        if (key < Integer.MIN_VALUE) {
+            return 0;
+        } else if (key > Integer.MAX_VALUE) {
+            return array.length;
+        }
+        return insertionPoint(Arrays.binarySearch(array, (int) key));
+    }
+
+    @Override
+    int countLess(int fromIndex, int toIndex, long key) {
+        int count = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            count += array[i] < key ? 1 : 0;
+        }
+        return count;
+    }
+
+    private IntArraySet(IntArraySet set) {
+        super(set.buildLevels());
+        this.array = set.array;
+    }
+
+    // Same elements with the static B+ search index of PrimitiveArraySet, sharing the array.
+    // Pays off once the array no longer fits in the caches, see SearchLayoutBenchmark.
+    public IntArraySet withSearchLayout() {
+        return hasSearchLayout() ? this : new IntArraySet(this);
+    }
+
+    public boolean contains(int e) {
+        return indexOf(e) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return array.length;
+    }
+
+    public int get(int index) {
+        return array[index];
+    }
+
+    public int lower(int e) {
+        return array[existing(lowerIndex(e))];
+    }
+
+    public int floor(int e) {
+        return array[existing(floorIndex(e))];
+    }
+
+    public int higher(int e) {
+        return array[existing(higherIndex(e))];
+    }
+
+    public int ceiling(int e) {
+        return array[existing(ceilingIndex(e))];
+    }
+
+    public int first() {
+        return array[existing(firstIndex())];
+    }
+
+    public int last() {
+        return array[existing(lastIndex())];
+    }
+
+    public int[] toArray() {
+        return array.clone();
+    }
+
+    // Elements are boxed one at a time on access, the array itself is shared
+    public NavigableSet<Integer> asNavigableSet() {
+        return ArraySet.view(new BoxedList(), null);
+    }
+
+    private class BoxedList extends AbstractList<Integer> implements RandomAccess {
+        @Override
+        public Integer get(int index) {
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return array.length;
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.util.*;
+
+// Mutable sorted set in log-structured style: a large immutable ArraySet base, a small sorted run
+// of added elements and a sorted run of tombstones for removed base elements.
+// Runs are merged into a new base once they outgrow the square root of the base size, which balances
+// the cost of shifting a run on every update against the linear merge.
+// Sub-set and descending views are live ranges over the same storage.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class LogStructuredSet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final int MIN_RUN_SIZE = 64;
+
+    private final Store<E> store;
+    // Range bounds in ascending order of the store, null if unbounded
+    private final E low;
+    private final boolean lowInclusive;
+    private final E high;
+    private final boolean highInclusive;
+    private final boolean descending;
+
+    public LogStructuredSet() {
+        this(Collections.emptyList(), null);
+    }
+
+    public LogStructuredSet(Comparator<? super E> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
+
+    public LogStructuredSet(Collection<? extends E> collection) {
+        this(collection, null);
+    }
+
+    public LogStructuredSet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        this(new Store<>(new ArraySet<>(collection, comparator)), null, false, null, false, false);
+    }
+
+    private LogStructuredSet(Store<E> store, E low, boolean lowInclusive, E high, boolean highInclusive,
+                             boolean descending) {
+        this.store = store;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    private static class Store<E> {
+        private ArraySet<E> base;
+        private final ArrayList<E> added = new ArrayList<>();
+        private final ArrayList<E> removed = new ArrayList<>();
+        private final Comparator<? super E> order;
+        private int modCount;
+
+        @SuppressWarnings("unchecked")
+        Store(ArraySet<E> base) {
+            this.base = base;
+            this.order = base.comparator() == null ? (Comparator<? super E>) Comparator.naturalOrder() : base.comparator();
+        }
+
+        int compare(E e1, E e2) {
+            return order.compare(e1, e2);
+        }
+
+        int size() {
+            return base.size() - removed.size() + added.size();
+        }
+
+        boolean inBase(E e) {
+            return base.contains(e) && Collections.binarySearch(removed, e, order) < 0;
+        }
+
+        boolean contains(E e) {
+            return inBase(e) || Collections.binarySearch(added, e, order) >= 0;
+        }
+
+        boolean add(E e) {
+            if (base.contains(e)) {
+                int index = Collections.binarySearch(removed, e, order);
+                if (index < 0) {
+                    return false;
+                }
+                removed.remove(index);
+            } else {
+                int index = Collections.binarySearch(added, e, order);
+                if (index >= 0) {
+                    return false;
+                }
+                added.add(-index - 1, e);
+            }
+            updated();
+            return true;
+        }
+
+        boolean remove(E e) {
+            int index = Collections.binarySearch(added, e, order);
+            if (index >= 0) {
+                added.remove(index);
+            } else if (base.contains(e)) {
+                index = Collections.binarySearch(removed, e, order);
+                if (index >= 0) {
+                    return false;
+                }
+                removed.add(-index - 1, e);
+            } else {
+                return false;
+            }
+            updated();
+            return true;
+        }
+
+        private void updated() {
+            modCount++;
+            mergeIfLarge();
+        }
+
+        // Merges the runs once they outgrow the threshold, returns whether it did
+        boolean mergeIfLarge() {
+            if (added.size() + removed.size() > Math.max(MIN_RUN_SIZE, (int) Math.sqrt(base.size()))) {
+                merge();
+                return true;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        void merge() {
+            Comparator<? super E> comparator = base.comparator();
+            ArraySet<E> merged = ArraySet.union(base, ArraySet.ofSorted(comparator, (E[]) added.toArray()));
+            base = ArraySet.difference(merged, ArraySet.ofSorted(comparator, (E[]) removed.toArray()));
+            added.clear();
+            removed.clear();
+            modCount++;
+        }
+
+        void clear() {
+            base = new ArraySet<>(base.comparator());
+            added.clear();
+            removed.clear();
+            modCount++;
+        }
+
+        // Index of the first base element not less than e (inclusive) or greater than e (exclusive)
+        int baseFrom(E e, boolean inclusive) {
+            int index = base.rank(e);
+            return inclusive || index == base.size() || compare(base.select(index), e) != 0 ? index : index + 1;
+        }
+
+        int runFrom(List<E> run, E e, boolean inclusive) {
+            int index = Collections.binarySearch(run, e, order);
+            return index < 0 ? -index - 1 : (inclusive ? index : index + 1);
+        }
+
+        // Closest element below (lower) or above e, inclusive of e itself if requested
+        E find(E e, boolean inclusive, boolean lower) {
+            return lower ? closest(baseFrom(e, !inclusive) - 1, runFrom(added, e, !inclusive) - 1, true)
+                    : closest(baseFrom(e, inclusive), runFrom(added, e, inclusive), false);
+        }
+
+        E last() {
+            return closest(base.size() - 1, added.size() - 1, true);
+        }
+
+        E first() {
+            return closest(0, 0, false);
+        }
+
+        // Closer of the base and added run candidates, moving past tombstones in the given direction
+        private E closest(int baseIndex, int addedIndex, boolean lower) {
+            int step = lower ? -1 : 1;
+            while (0 <= baseIndex && baseIndex < base.size()
+                    && Collections.binarySearch(removed, base.select(baseIndex), order) >= 0) {
+                baseIndex += step;
+            }
+
+            E fromBase = 0 <= baseIndex && baseIndex < base.size() ? base.select(baseIndex) : null;
+            E fromAdded = 0 <= addedIndex && addedIndex < added.size() ? added.get(addedIndex) : null;
+            if (fromBase == null || fromAdded == null) {
+                return fromBase == null ? fromAdded : fromBase;
+            }
+            return (compare(fromBase, fromAdded) < 0) == lower ? fromAdded : fromBase;
+        }
+
+        // Number of elements between the bounds, in O(log n)
+        int count(E low, boolean lowInclusive, E high, boolean highInclusive) {
+            int baseCount = (high == null ? base.size() : baseFrom(high, !highInclusive))
+                    - (low == null ? 0 : baseFrom(low, lowInclusive));
+            return Math.max(0, baseCount - runCount(removed, low, lowInclusive, high, highInclusive))
+                    + runCount(added, low, lowInclusive, high, highInclusive);
+        }
+
+        private int runCount(List<E> run, E low, boolean lowInclusive, E high, boolean highInclusive) {
+            return Math.max(0, (high == null ? run.size() : runFrom(run, high, !highInclusive))
+                    - (low == null ? 0 : runFrom(run, low, lowInclusive)));
+        }
+    }
+
+    private boolean tooLow(E e) {
+        if (low == null) {
+            return false;
+        }
+        int compared = store.compare(e, low);
+        return compared < 0 || compared == 0 && !lowInclusive;
+    }
+
+    private boolean tooHigh(E e) {
+        if (high == null) {
+            return false;
+        }
+        int compared = store.compare(e, high);
+        return compared > 0 || compared == 0 && !highInclusive;
+    }
+
+    private boolean inRange(E e) {
+        return !tooLow(e) && !tooHigh(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean contains(Object o) {
+        E e = (E) Objects.requireNonNull(o);
+        return inRange(e) && store.contains(e);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (!inRange(Objects.requireNonNull(e))) {
+            throw new IllegalArgumentException("Element out of range");
+        }
+        return store.add(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean remove(Object o) {
+        E e = (E) Objects.requireNonNull(o);
+        return inRange(e) && store.remove(e);
+    }
+
+    @Override
+    public void clear() {
+        if (low == null && high == null) {
+            store.clear();
+        } else {
+            super.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        return low == null && high == null ? store.size() : store.count(low, lowInclusive, high, highInclusive);
+    }
+
+    // Merges pending runs into the base right away, e.g. before a read-mostly phase
+    public void compact() {
+        store.merge();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Cursor(!descending);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new Cursor(descending);
+    }
+
+    // Merges the base and the added run in one pass, skipping tombstones along the way
+    private class Cursor implements Iterator<E> {
+        private final int step;
+        private int baseIndex;
+        private int addedIndex;
+        private int removedIndex;
+        private int expectedModCount = store.modCount;
+        private E last;
+        private boolean lastAdded;
+        private boolean nextAdded;
+
+        Cursor(boolean ascending) {
+            step = ascending ? 1 : -1;
+            if (ascending) {
+                baseIndex = low == null ? 0 : store.baseFrom(low, lowInclusive);
+                addedIndex = low == null ? 0 : store.runFrom(store.added, low, lowInclusive);
+                removedIndex = low == null ? 0 : store.runFrom(store.removed, low, lowInclusive);
+            } else {
+                baseIndex = (high == null ? store.base.size() : store.baseFrom(high, !highInclusive)) - 1;
+                addedIndex = (high == null ? store.added.size() : store.runFrom(store.added, high, !highInclusive)) - 1;
+                removedIndex = (high == null ? store.removed.size()
+                        : store.runFrom(store.removed, high, !highInclusive)) - 1;
+            }
+        }
+
+        private boolean valid(int index, int size) {
+            return 0 <= index && index < size;
+        }
+
+        private E peek() {
+            if (store.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            // Tombstones are a subset of the base, so both are walked in step
+            while (valid(baseIndex, store.base.size()) && valid(removedIndex, store.removed.size())) {
+                int compared = step * store.compare(store.removed.get(removedIndex), store.base.select(baseIndex));
+                if (compared < 0) {
+                    removedIndex += step;
+                } else if (compared == 0) {
+                    removedIndex += step;
+                    baseIndex += step;
+                } else {
+                    break;
+                }
+            }
+
+            E fromBase = valid(baseIndex, store.base.size()) ? store.base.select(baseIndex) : null;
+            E fromAdded = valid(addedIndex, store.added.size()) ? store.added.get(addedIndex) : null;
+            nextAdded = fromBase == null || fromAdded != null && step * store.compare(fromAdded, fromBase) < 0;
+            E next = nextAdded ? fromAdded : fromBase;
+            return next == null || (step > 0 ? tooHigh(next) : tooLow(next)) ? null : next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peek() != null;
+        }
+
+        @Override
+        public E next() {
+            E next = peek();
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastAdded = nextAdded;
+            if (lastAdded) {
+                addedIndex += step;
+            } else {
+                baseIndex += step;
+            }
+            last = next;
+            return next;
+        }
+
+        // Applies the merge threshold of remove(Object), a merge moves the cursor into the new base
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (store.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (lastAdded) {
+                int index = addedIndex - step;
+                store.added.remove(index);
+                if (index < addedIndex) {
+                    addedIndex--;
+                }
+            } else {
+                int index = -Collections.binarySearch(store.removed, last, store.order) - 1;
+                store.removed.add(index, last);
+                if (index <= removedIndex) {
+                    removedIndex++;
+                }
+            }
+            store.modCount++;
+            if (store.mergeIfLarge()) {
+                // Runs are empty now, continue right past the removed element
+                baseIndex = step > 0 ? store.baseFrom(last, false) : store.baseFrom(last, true) - 1;
+                addedIndex = step > 0 ? 0 : -1;
+                removedIndex = step > 0 ? 0 : -1;
+            }
+            expectedModCount = store.modCount;
+            last = null;
+        }
+    }
+
+    // Closest element in ascending order of the store, restricted to the range
+    private E ascending(E e, boolean inclusive, boolean lower) {
+        Objects.requireNonNull(e);
+        if (lower && tooHigh(e)) {
+            return ascendingLast();
+        }
+        if (!lower && tooLow(e)) {
+            return ascendingFirst();
+        }
+        E found = store.find(e, inclusive, lower);
+        return found == null || !inRange(found) ? null : found;
+    }
+
+    private E ascendingFirst() {
+        E found = low == null ? store.first() : store.find(low, lowInclusive, false);
+        return found == null || tooHigh(found) ? null : found;
+    }
+
+    private E ascendingLast() {
+        E found = high == null ? store.last() : store.find(high, highInclusive, true);
+        return found == null || tooLow(found) ? null : found;
+    }
+
+    @Override
+    public E lower(E e) {
+        return ascending(e, false, !descending);
+    }
+
+    @Override
+    public E floor(E e) {
+        return ascending(e, true, !descending);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return ascending(e, true, descending);
+    }
+
+    @Override
+    public E higher(E e) {
+        return ascending(e, false, descending);
+    }
+
+    private E nullableFirst() {
+        return descending ? ascendingLast() : ascendingFirst();
+    }
+
+    private E nullableLast() {
+        return descending ? ascendingFirst() : ascendingLast();
+    }
+
+    @Override
+    public E first() {
+        E first = nullableFirst();
+        if (first == null) {
+            throw new NoSuchElementException();
+        }
+        return first;
+    }
+
+    @Override
+    public E last() {
+        E last = nullableLast();
+        if (last == null) {
+            throw new NoSuchElementException();
+        }
+        return last;
+    }
+
+    @Override
+    public E pollFirst() {
+        E first = nullableFirst();
+        if (first != null) {
+            store.remove(first);
+        }
+        return first;
+    }
+
+    @Override
+    public E pollLast() {
+        E last = nullableLast();
+        if (last != null) {
+            store.remove(last);
+        }
+        return last;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        Comparator<? super E> comparator = store.base.comparator();
+        return descending ? Collections.reverseOrder(comparator) : comparator;
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new LogStructuredSet<>(store, low, lowInclusive, high, highInclusive, !descending);
+    }
+
+    // A bound may coincide with an exclusive end of the range only if it is exclusive itself
+    private void checkBound(E e, boolean inclusive) {
+        boolean atLow = low != null && store.compare(e, low) == 0;
+        boolean atHigh = high != null && store.compare(e, high) == 0;
+        if ((atLow ? inclusive && !lowInclusive : tooLow(e)) || (atHigh ? inclusive && !highInclusive : tooHigh(e))) {
+            throw new IllegalArgumentException("Bound out of range");
+        }
+    }
+
+    private NavigableSet<E> ascendingView(E newLow, boolean newLowInclusive, E newHigh, boolean newHighInclusive) {
+        if (newLow != null) {
+            checkBound(newLow, newLowInclusive);
+        } else {
+            newLow = low;
+            newLowInclusive = lowInclusive;
+        }
+        if (newHigh != null) {
+            checkBound(newHigh, newHighInclusive);
+        } else {
+            newHigh = high;
+            newHighInclusive = highInclusive;
+        }
+        return new LogStructuredSet<>(store, newLow, newLowInclusive, newHigh, newHighInclusive, descending);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        int compared = store.compare(Objects.requireNonNull(fromElement), Objects.requireNonNull(toElement));
+        if (descending ? compared < 0 : compared > 0) {
+            throw new IllegalArgumentException();
+        }
+        return descending ? ascendingView(toElement, toInclusive, fromElement, fromInclusive)
+                : ascendingView(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        Objects.requireNonNull(toElement);
+        return descending ? ascendingView(toElement, inclusive, null, false)
+                : ascendingView(null, false, toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        Objects.requireNonNull(fromElement);
+        return descending ? ascendingView(null, false, fromElement, inclusive)
+                : ascendingView(fromElement, inclusive, null, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
@@ -0,0 +1,112 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.util.*;
+
+// Immutable sorted set of longs backed by a plain long[] and searched without boxing.
+// Primitive lookups throw NoSuchElementException if there is no such element, the index lookups
+// of PrimitiveArraySet return -1 instead, the boxed NavigableSet view returns null as usual.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class LongArraySet extends PrimitiveArraySet {
+    private final long[] array;
+
+    public LongArraySet(long... elements) {
+        long[] sorted = elements.clone();
+        Arrays.sort(sorted);
+
+        int size = 0;
+        for (long element : sorted) {
+            if (size == 0 || sorted[size - 1] != element) {
+                sorted[size++] = element;
+            }
+        }
+        this.array = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    @Override
+    long key(int index) {
+        return array[index];
+    }
+
+    @Override
+    int binaryLowerBound(long key) {
+        return insertionPoint(Arrays.binarySearch(array, key));
+    }
+
+    @Override
+    int countLess(int fromIndex, int toIndex, long key) {
+        int count = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            count += array[i] < key ? 1 : 0;
+        }
+        return count;
+    }
+
+    private LongArraySet(LongArraySet set) {
+        super(set.buildLevels());
+        this.array = set.array;
+    }
+
+    // Same elements with the static B+ search index of PrimitiveArraySet, sharing the array.
+    // Pays off once the array no longer fits in the caches, see SearchLayoutBenchmark.
+    public LongArraySet withSearchLayout() {
+        return hasSearchLayout() ? this : new LongArraySet(this);
+    }
+
+    public boolean contains(long e) {
+        return indexOf(e) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return array.length;
+    }
+
+    public long get(int index) {
+        return array[index];
+    }
+
+    public long lower(long e) {
+        return array[existing(lowerIndex(e))];
+    }
+
+    public long floor(long e) {
+        return array[existing(floorIndex(e))];
+    }
+
+    public long higher(long e) {
+        return array[existing(higherIndex(e))];
+    }
+
+    public long ceiling(long e) {
+        return array[existing(ceilingIndex(e))];
+    }
+
+    public long first() {
+        return array[existing(firstIndex())];
+    }
+
+    public long last() {
+        return array[existing(lastIndex())];
+    }
+
+    public long[] toArray() {
+        return array.clone();
+    }
+
+    // Elements are boxed one at a time on access, the array itself is shared
+    public NavigableSet<Long> asNavigableSet() {
+        return ArraySet.view(new BoxedList(), null);
+    }
+
+    private class BoxedList extends AbstractList<Long> implements RandomAccess {
+        @Override
+        public Long get(int index) {
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return array.length;
+        }
+    }
+}
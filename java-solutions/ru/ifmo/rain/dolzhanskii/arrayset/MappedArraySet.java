@@ -0,0 +1,262 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+// Sorted sets of fixed-width keys kept in a memory-mapped file instead of the heap.
+// Opening maps the file without reading it, keys are paged in by the OS as searches touch them.
+// The returned sets are ArraySet views over the mapping, so the whole read API, views included, is available.
+// Format, big-endian:
+// header: int magic, int version, int kind, int key width, long count, 8 bytes padding
+// keys:   count keys of the header's width in strictly increasing order
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class MappedArraySet {
+    static final int MAGIC = 0x4b455953;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int KIND_LONG = 0;
+    private static final int KIND_BYTES = 1;
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    // Order of every set returned by openKeys, shared so that they can be merged with each other
+    public static final Comparator<byte[]> KEY_ORDER = Arrays::compareUnsigned;
+
+    private MappedArraySet() {
+    }
+
+    // Signed order of longs, as in ArraySet<Long> with natural order
+    public static ArraySet<Long> openLongs(Path path) throws IOException {
+        Mapping mapping = new Mapping(path, KIND_LONG);
+        return ArraySet.view(new LongList(mapping), null);
+    }
+
+    // Unsigned lexicographic order of keys, every element returned is a fresh copy
+    public static ArraySet<byte[]> openKeys(Path path) throws IOException {
+        Mapping mapping = new Mapping(path, KIND_BYTES);
+        return ArraySet.view(new KeyList(mapping), KEY_ORDER);
+    }
+
+    public static void writeLongs(Path path, LongStream sorted) throws IOException {
+        try (Writer writer = Writer.longs(path)) {
+            for (PrimitiveIterator.OfLong iterator = sorted.iterator(); iterator.hasNext(); ) {
+                writer.add(iterator.nextLong());
+            }
+            writer.finish();
+        }
+    }
+
+    public static void writeKeys(Path path, int width, Stream<byte[]> sorted) throws IOException {
+        try (Writer writer = Writer.keys(path, width)) {
+            for (Iterator<byte[]> iterator = sorted.iterator(); iterator.hasNext(); ) {
+                writer.add(iterator.next());
+            }
+            writer.finish();
+        }
+    }
+
+    private static class Mapping {
+        private final int width;
+        private final int size;
+        private final int keysPerSegment;
+        private final MappedByteBuffer[] segments;
+
+        Mapping(Path path, int kind) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining()) {
+                    if (channel.read(header, header.position()) < 0) {
+                        throw new IOException("Truncated key file header");
+                    }
+                }
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Not a key file of version " + VERSION);
+                }
+                if (header.getInt() != kind) {
+                    throw new IOException("Key file holds keys of another kind");
+                }
+                width = header.getInt();
+                long count = header.getLong();
+                if (width <= 0 || count < 0 || count > Integer.MAX_VALUE
+                        || channel.size() < HEADER_SIZE + count * width) {
+                    throw new IOException("Damaged key file header");
+                }
+                size = (int) count;
+
+                // Segments hold whole keys, so no key straddles two mappings
+                keysPerSegment = (int) (SEGMENT_SIZE / width);
+                segments = new MappedByteBuffer[size == 0 ? 0 : (size - 1) / keysPerSegment + 1];
+                for (int i = 0; i < segments.length; i++) {
+                    long first = (long) i * keysPerSegment;
+                    long keys = Math.min(keysPerSegment, size - first);
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * width, keys * width);
+                }
+            }
+        }
+
+        ByteBuffer segment(int index) {
+            return segments[index / keysPerSegment];
+        }
+
+        int offset(int index) {
+            return index % keysPerSegment * width;
+        }
+    }
+
+    private static class LongList extends AbstractList<Long> implements RandomAccess {
+        private final Mapping mapping;
+
+        LongList(Mapping mapping) {
+            this.mapping = mapping;
+        }
+
+        @Override
+        public Long get(int index) {
+            Objects.checkIndex(index, mapping.size);
+            return mapping.segment(index).getLong(mapping.offset(index));
+        }
+
+        @Override
+        public int size() {
+            return mapping.size;
+        }
+    }
+
+    private static class KeyList extends AbstractList<byte[]> implements RandomAccess {
+        private final Mapping mapping;
+
+        KeyList(Mapping mapping) {
+            this.mapping = mapping;
+        }
+
+        // Absolute reads only, so concurrent readers never share a buffer position
+        @Override
+        public byte[] get(int index) {
+            Objects.checkIndex(index, mapping.size);
+            ByteBuffer segment = mapping.segment(index);
+            int offset = mapping.offset(index);
+            byte[] key = new byte[mapping.width];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = segment.get(offset + i);
+            }
+            return key;
+        }
+
+        @Override
+        public int size() {
+            return mapping.size;
+        }
+    }
+
+    // Streams keys to a file, checking that they arrive strictly increasing.
+    // The count is patched in on close only after finish, a writer closed without it deletes the partial file.
+    public static class Writer implements Closeable {
+        private final Path path;
+        private final DataOutputStream outputStream;
+        private final int kind;
+        private final int width;
+        private final byte[] previous;
+        private long count;
+        private boolean finished;
+
+        private Writer(Path path, int kind, int width) throws IOException {
+            if (width <= 0) {
+                throw new IllegalArgumentException("Key width must be positive");
+            }
+            this.path = path;
+            this.kind = kind;
+            this.width = width;
+            this.previous = new byte[width];
+            this.outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+            outputStream.writeInt(kind);
+            outputStream.writeInt(width);
+            outputStream.write(new byte[HEADER_SIZE - 4 * Integer.BYTES]);
+        }
+
+        public static Writer longs(Path path) throws IOException {
+            return new Writer(path, KIND_LONG, Long.BYTES);
+        }
+
+        public static Writer keys(Path path, int width) throws IOException {
+            return new Writer(path, KIND_BYTES, width);
+        }
+
+        public void add(long key) throws IOException {
+            checkKind(KIND_LONG);
+            checkOpen();
+            if (count > 0 && ByteBuffer.wrap(previous).getLong() >= key) {
+                throw new IllegalArgumentException("Keys must be in strictly increasing order");
+            }
+            ByteBuffer.wrap(previous).putLong(key);
+            append(previous);
+        }
+
+        public void add(byte[] key) throws IOException {
+            checkKind(KIND_BYTES);
+            checkOpen();
+            if (key.length != width || count > 0 && Arrays.compareUnsigned(previous, key) >= 0) {
+                throw new IllegalArgumentException("Keys must be " + width + " bytes in strictly increasing order");
+            }
+            System.arraycopy(key, 0, previous, 0, width);
+            append(key);
+        }
+
+        // Each kind has its own order, so keys of the other kind would make the file unsearchable
+        private void checkKind(int expected) {
+            if (kind != expected) {
+                throw new IllegalStateException(kind == KIND_LONG ? "Writer of longs" : "Writer of byte keys");
+            }
+        }
+
+        private void checkOpen() {
+            if (finished) {
+                throw new IllegalStateException("Writer is finished");
+            }
+        }
+
+        // Marks all keys as written, so that close completes the file
+        public void finish() {
+            finished = true;
+        }
+
+        private void append(byte[] key) throws IOException {
+            if (count == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many keys");
+            }
+            outputStream.write(key);
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            boolean written = false;
+            try {
+                outputStream.close();
+                if (finished) {
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        ByteBuffer countBuffer = ByteBuffer.allocate(Long.BYTES).putLong(0, count);
+                        while (countBuffer.hasRemaining()) {
+                            channel.write(countBuffer, 4 * Integer.BYTES + countBuffer.position());
+                        }
+                    }
+                    written = true;
+                }
+            } finally {
+                if (!written) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+}
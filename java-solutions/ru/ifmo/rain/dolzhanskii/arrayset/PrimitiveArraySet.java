@@ -0,0 +1,134 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Search logic shared by the primitive array sets, in terms of positions in the sorted array.
+// Index lookups return -1 if there is no such element, so misses never go through exceptions;
+// element lookups of the subclasses throw NoSuchElementException in that case.
+// Keys are longs, ints are widened without changing their order.
+// An optional static B+ index speeds up searches in sets far larger than the caches: every level keeps
+// the first key of each NODE_SIZE-key block of the level below, so each step scans one cache line
+// of inline keys and the sorted array itself is the leaf level. It costs about 1/7 extra longs per element.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public abstract class PrimitiveArraySet {
+    static final int NODE_SIZE = 8;
+
+    // Index levels from the one above the array up to the root of at most NODE_SIZE keys, null if not built
+    private final long[][] levels;
+
+    PrimitiveArraySet() {
+        this.levels = null;
+    }
+
+    PrimitiveArraySet(long[][] levels) {
+        this.levels = levels;
+    }
+
+    public abstract int size();
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Element at the given index, widened to long
+    abstract long key(int index);
+
+    // First index whose element is not less than key, size() if there is none, by binary search
+    abstract int binaryLowerBound(long key);
+
+    // Number of elements less than key among those with indices from fromIndex inclusive to toIndex exclusive
+    abstract int countLess(int fromIndex, int toIndex, long key);
+
+    boolean hasSearchLayout() {
+        return levels != null;
+    }
+
+    // Levels for the search layout of this set's elements
+    long[][] buildLevels() {
+        List<long[]> levels = new ArrayList<>();
+        int length = size();
+        while (length > NODE_SIZE) {
+            long[] level = new long[(length + NODE_SIZE - 1) / NODE_SIZE];
+            long[] below = levels.isEmpty() ? null : levels.get(levels.size() - 1);
+            for (int i = 0; i < level.length; i++) {
+                level[i] = below == null ? key(i * NODE_SIZE) : below[i * NODE_SIZE];
+            }
+            levels.add(level);
+            length = level.length;
+        }
+        return levels.toArray(new long[0][]);
+    }
+
+    // First index whose element is not less than key, size() if there is none
+    int lowerBound(long key) {
+        if (levels == null) {
+            return binaryLowerBound(key);
+        }
+
+        // Each level narrows the search to the block under its last key not greater than key
+        int block = 0;
+        for (int level = levels.length - 1; level >= 0; level--) {
+            long[] keys = levels[level];
+            int end = Math.min(keys.length, block + NODE_SIZE);
+            int notGreater = 0;
+            for (int i = block; i < end; i++) {
+                notGreater += keys[i] <= key ? 1 : 0;
+            }
+            if (notGreater == 0) {
+                // Only possible at the root, key is less than all elements
+                return 0;
+            }
+            block = (block + notGreater - 1) * NODE_SIZE;
+        }
+        return block + countLess(block, Math.min(size(), block + NODE_SIZE), key);
+    }
+
+    public int indexOf(long key) {
+        int index = lowerBound(key);
+        return index < size() && key(index) == key ? index : -1;
+    }
+
+    public int lowerIndex(long key) {
+        return lowerBound(key) - 1;
+    }
+
+    public int floorIndex(long key) {
+        int index = lowerBound(key);
+        return index < size() && key(index) == key ? index : index - 1;
+    }
+
+    public int ceilingIndex(long key) {
+        int index = lowerBound(key);
+        return index < size() ? index : -1;
+    }
+
+    public int higherIndex(long key) {
+        int index = lowerBound(key);
+        if (index < size() && key(index) == key) {
+            index++;
+        }
+        return index < size() ? index : -1;
+    }
+
+    public int firstIndex() {
+        return isEmpty() ? -1 : 0;
+    }
+
+    public int lastIndex() {
+        return size() - 1;
+    }
+
+    static int existing(int index) {
+        if (index < 0) {
+            throw new NoSuchElementException();
+        }
+        return index;
+    }
+
+    // Same contract as Arrays.binarySearch, converted to the first index not less than key
+    static int insertionPoint(int searchResult) {
+        return searchResult >= 0 ? searchResult : -searchResult - 1;
+    }
+}
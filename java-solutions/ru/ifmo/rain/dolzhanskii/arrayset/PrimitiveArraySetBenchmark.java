@@ -0,0 +1,73 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+// Compares lookups in LongArraySet, its boxed view and ArraySet<Long> over random longs.
+// Usage: java PrimitiveArraySetBenchmark [SIZE [QUERIES [ITERATIONS]]]
+class PrimitiveArraySetBenchmark {
+    private static final int DEFAULT_SIZE = 1_000_000;
+    private static final int DEFAULT_QUERIES = 1_000_000;
+    private static final int DEFAULT_ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_QUERIES;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ITERATIONS;
+
+        Random random = new Random(size);
+        long[] elements = random.longs(size, 0, 4L * size).toArray();
+        long[] keys = random.longs(queries, 0, 4L * size).toArray();
+        Long[] boxedKeys = Arrays.stream(keys).boxed().toArray(Long[]::new);
+
+        LongArraySet primitive = new LongArraySet(elements);
+        NavigableSet<Long> view = primitive.asNavigableSet();
+        ArraySet<Long> boxed = new ArraySet<>(Arrays.stream(elements).boxed().collect(Collectors.toList()));
+        System.out.println(primitive.size() + " elements, " + queries + " queries");
+
+        report("contains LongArraySet", iterations, queries, () -> {
+            long found = 0;
+            for (long key : keys) {
+                found += primitive.contains(key) ? 1 : 0;
+            }
+            return found;
+        });
+        report("contains view", iterations, queries, () -> {
+            long found = 0;
+            for (Long key : boxedKeys) {
+                found += view.contains(key) ? 1 : 0;
+            }
+            return found;
+        });
+        report("contains ArraySet<Long>", iterations, queries, () -> {
+            long found = 0;
+            for (Long key : boxedKeys) {
+                found += boxed.contains(key) ? 1 : 0;
+            }
+            return found;
+        });
+        report("ceiling LongArraySet", iterations, queries, () -> {
+            long sum = 0;
+            for (long key : keys) {
+                int index = primitive.ceilingIndex(key);
+                sum += index < 0 ? 0 : primitive.get(index);
+            }
+            return sum;
+        });
+        report("ceiling ArraySet<Long>", iterations, queries, () -> {
+            long sum = 0;
+            for (Long key : boxedKeys) {
+                Long ceiling = boxed.ceiling(key);
+                sum += ceiling == null ? 0 : ceiling;
+            }
+            return sum;
+        });
+    }
+
+    private static void report(String name, int iterations, int queries, BenchmarkRunner.Operation operation) {
+        BenchmarkRunner.report(name, BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS,
+                iterations, operation), queries);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.ifmo.rain.dolzhanskii.arrayset;
+
+import java.util.Random;
+
+// Compares LongArraySet lookups with plain binary search and with the static B+ search index across set sizes.
+// The largest default size needs about 2 GB of heap, pass -Xmx accordingly or choose sizes explicitly.
+// Usage: java SearchLayoutBenchmark [QUERIES [SIZE...]]
+class SearchLayoutBenchmark {
+    private static final int DEFAULT_QUERIES = 1_000_000;
+    private static final int[] DEFAULT_SIZES = {1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_QUERIES;
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (int size : sizes) {
+            Random random = new Random(size);
+            LongArraySet plain = new LongArraySet(random.longs(size, 0, 2L * size).toArray());
+            LongArraySet layout = plain.withSearchLayout();
+            long[] keys = random.longs(queries, 0, 2L * size).toArray();
+            System.out.println(plain.size() + " elements, " + queries + " queries");
+
+            report("contains binary search", queries, () -> contains(plain, keys));
+            report("contains search index", queries, () -> contains(layout, keys));
+            report("floor binary search", queries, () -> floor(plain, keys));
+            report("floor search index", queries, () -> floor(layout, keys));
+        }
+    }
+
+    private static long contains(LongArraySet set, long[] keys) {
+        long found = 0;
+        for (long key : keys) {
+            found += set.contains(key) ? 1 : 0;
+        }
+        return found;
+    }
+
+    private static long floor(LongArraySet set, long[] keys) {
+        long sum = 0;
+        for (long key : keys) {
+            int index = set.floorIndex(key);
+            sum += index < 0 ? 0 : set.get(index);
+        }
+        return sum;
+    }
+
+    private static void report(String name, int queries, BenchmarkRunner.Operation operation) {
+        BenchmarkRunner.report(name, BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS,
+                ITERATIONS, operation), queries);
+    }
+}
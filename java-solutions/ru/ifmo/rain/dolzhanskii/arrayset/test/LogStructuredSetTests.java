@@ -0,0 +1,204 @@
+package ru.ifmo.rain.dolzhanskii.arrayset.test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.dolzhanskii.arrayset.LogStructuredSet;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Differential tests, every operation is mirrored on a TreeSet and the results are compared.
+// Sizes are large enough for the pending runs to be merged into the base several times.
+@DisplayName("Log-structured set tests")
+class LogStructuredSetTests {
+    private static final int SIZE = 10_000;
+    private static final int OPERATIONS = 50_000;
+
+    private static List<Integer> randomElements(final Random random, final int size) {
+        return random.ints(size, 0, 4 * SIZE).boxed().collect(Collectors.toList());
+    }
+
+    private static void assertSameSet(final NavigableSet<Integer> expected, final NavigableSet<Integer> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+        assertEquals(new ArrayList<>(expected.descendingSet()), new ArrayList<>(actual.descendingSet()));
+        if (!expected.isEmpty()) {
+            assertEquals(expected.first(), actual.first());
+            assertEquals(expected.last(), actual.last());
+        }
+    }
+
+    private static void assertSameQueries(final NavigableSet<Integer> expected, final NavigableSet<Integer> actual,
+                                          final Integer e) {
+        assertEquals(expected.contains(e), actual.contains(e));
+        assertEquals(expected.lower(e), actual.lower(e));
+        assertEquals(expected.floor(e), actual.floor(e));
+        assertEquals(expected.ceiling(e), actual.ceiling(e));
+        assertEquals(expected.higher(e), actual.higher(e));
+    }
+
+    private static void randomOperations(final NavigableSet<Integer> expected, final NavigableSet<Integer> actual,
+                                         final Random random, final int from, final int to, final int operations) {
+        for (int i = 0; i < operations; i++) {
+            final Integer e = from + random.nextInt(to - from);
+            switch (random.nextInt(5)) {
+                case 0:
+                case 1:
+                    assertEquals(expected.add(e), actual.add(e));
+                    break;
+                case 2:
+                case 3:
+                    assertEquals(expected.remove(e), actual.remove(e));
+                    break;
+                default:
+                    assertSameQueries(expected, actual, e);
+                    assertEquals(expected.size(), actual.size());
+            }
+        }
+        assertSameSet(expected, actual);
+    }
+
+    @Test
+    @DisplayName("Random updates and queries")
+    void testRandomOperations() {
+        final Random random = new Random(3757);
+        final List<Integer> elements = randomElements(random, SIZE);
+        randomOperations(new TreeSet<>(elements), new LogStructuredSet<>(elements), random, 0, 4 * SIZE, OPERATIONS);
+    }
+
+    @Test
+    @DisplayName("Comparator order")
+    void testComparator() {
+        final Random random = new Random(8125);
+        final List<Integer> elements = randomElements(random, SIZE);
+        final NavigableSet<Integer> expected = new TreeSet<>(Comparator.reverseOrder());
+        expected.addAll(elements);
+        randomOperations(expected, new LogStructuredSet<>(elements, Comparator.reverseOrder()), random, 0, 4 * SIZE, OPERATIONS);
+    }
+
+    @Test
+    @DisplayName("Poll first and last")
+    void testPoll() {
+        final List<Integer> elements = randomElements(new Random(1907), SIZE);
+        final NavigableSet<Integer> expected = new TreeSet<>(elements);
+        final NavigableSet<Integer> actual = new LogStructuredSet<>(elements);
+        while (!expected.isEmpty()) {
+            assertEquals(expected.pollFirst(), actual.pollFirst());
+            assertEquals(expected.pollLast(), actual.pollLast());
+        }
+        assertTrue(actual.isEmpty());
+        assertNull(actual.pollFirst());
+    }
+
+    private static void testIteratorRemove(final boolean descending) {
+        final Random random = new Random(descending ? 4421 : 6203);
+        final List<Integer> elements = randomElements(random, SIZE);
+        final NavigableSet<Integer> expected = new TreeSet<>(elements);
+        final LogStructuredSet<Integer> actual = new LogStructuredSet<>(elements);
+        // Runs added before iteration make the cursor walk the base and the added run together
+        for (int i = 0; i < SIZE / 10; i++) {
+            final Integer e = random.nextInt(4 * SIZE);
+            expected.add(e);
+            actual.add(e);
+        }
+
+        final List<Integer> visited = new ArrayList<>();
+        final Iterator<Integer> expectedIterator = descending ? expected.descendingIterator() : expected.iterator();
+        final Iterator<Integer> actualIterator = descending ? actual.descendingIterator() : actual.iterator();
+        while (expectedIterator.hasNext()) {
+            assertTrue(actualIterator.hasNext());
+            final Integer e = expectedIterator.next();
+            assertEquals(e, actualIterator.next());
+            visited.add(e);
+            if (random.nextInt(3) != 0) {
+                expectedIterator.remove();
+                actualIterator.remove();
+            }
+        }
+        assertFalse(actualIterator.hasNext());
+        assertThrows(IllegalStateException.class, () -> {
+            final Iterator<Integer> iterator = actual.iterator();
+            iterator.remove();
+        });
+
+        final List<Integer> all = new ArrayList<>(new TreeSet<>(visited));
+        if (descending) {
+            Collections.reverse(all);
+        }
+        assertEquals(all, visited);
+        assertSameSet(expected, actual);
+    }
+
+    @Test
+    @DisplayName("Iterator removal")
+    void testIteratorRemove() {
+        testIteratorRemove(false);
+    }
+
+    @Test
+    @DisplayName("Descending iterator removal")
+    void testDescendingIteratorRemove() {
+        testIteratorRemove(true);
+    }
+
+    @Test
+    @DisplayName("Iterator fails fast")
+    void testConcurrentModification() {
+        final NavigableSet<Integer> set = new LogStructuredSet<>(List.of(1, 2, 3));
+        final Iterator<Integer> iterator = set.iterator();
+        iterator.next();
+        set.add(4);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    @DisplayName("Range views")
+    void testViews() {
+        final Random random = new Random(5519);
+        final List<Integer> elements = randomElements(random, SIZE);
+        final NavigableSet<Integer> expected = new TreeSet<>(elements);
+        final NavigableSet<Integer> actual = new LogStructuredSet<>(elements);
+
+        for (int i = 0; i < 20; i++) {
+            final int from = random.nextInt(2 * SIZE);
+            final int to = from + 1 + random.nextInt(2 * SIZE);
+            final boolean fromInclusive = random.nextBoolean();
+            final boolean toInclusive = random.nextBoolean();
+            final NavigableSet<Integer> expectedView = expected.subSet(from, fromInclusive, to, toInclusive);
+            final NavigableSet<Integer> actualView = actual.subSet(from, fromInclusive, to, toInclusive);
+            assertSameSet(expectedView, actualView);
+            assertSameSet(expected.headSet(to, toInclusive), actual.headSet(to, toInclusive));
+            assertSameSet(expected.tailSet(from, fromInclusive), actual.tailSet(from, fromInclusive));
+            assertSameSet(expectedView.descendingSet(), actualView.descendingSet());
+
+            final int lowest = fromInclusive ? from : from + 1;
+            final int highest = toInclusive ? to : to - 1;
+            if (lowest <= highest) {
+                randomOperations(expectedView, actualView, random, lowest, highest + 1, OPERATIONS / 20);
+            }
+            for (int j = 0; j < 100; j++) {
+                assertSameQueries(expectedView, actualView, random.nextInt(4 * SIZE));
+            }
+            assertSameSet(expected, actual);
+        }
+        assertThrows(IllegalArgumentException.class, () -> actual.headSet(SIZE, false).add(SIZE));
+    }
+
+    @Test
+    @DisplayName("Clear")
+    void testClear() {
+        final List<Integer> elements = IntStream.range(0, SIZE).boxed().collect(Collectors.toList());
+        final NavigableSet<Integer> expected = new TreeSet<>(elements);
+        final NavigableSet<Integer> actual = new LogStructuredSet<>(elements);
+        expected.subSet(100, 200).clear();
+        actual.subSet(100, 200).clear();
+        assertSameSet(expected, actual);
+        actual.clear();
+        assertTrue(actual.isEmpty());
+        assertTrue(actual.add(1));
+        assertEquals(List.of(1), new ArrayList<>(actual));
+    }
+}
@@ -0,0 +1,32 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+
+// Minimal warmup-then-measure loop shared by the walk benchmarks
+class BenchmarkRunner {
+    static final int DEFAULT_WARMUP_ITERATIONS = 2;
+
+    interface Operation {
+        void run() throws IOException;
+    }
+
+    private BenchmarkRunner() {
+    }
+
+    // Returns average seconds per iteration
+    static double measure(int warmupIterations, int iterations, Operation operation) throws IOException {
+        for (int i = 0; i < warmupIterations; i++) {
+            operation.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        return (System.nanoTime() - start) / 1e9 / iterations;
+    }
+
+    static void report(String name, double seconds, long files, long bytes) {
+        System.out.printf("%-24s %12.0f files/s %10.1f MB/s%n", name, files / seconds, bytes / seconds / (1 << 20));
+    }
+}
@@ -0,0 +1,80 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Compact big-endian format for downstream tools:
+// header:  int magic, int version, int name length, UTF-8 algorithm name, int digest length
+// records: int path length, UTF-8 path, raw digest of the header's length
+// Approximate hashes are marked by APPROXIMATE_SUFFIX appended to the algorithm name.
+class BinaryResultWriter implements ResultWriter {
+    static final int MAGIC = 0x574c4b52;
+    static final int VERSION = 1;
+    static final String APPROXIMATE_SUFFIX = "~sampled";
+
+    private final DataOutputStream outputStream;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    BinaryResultWriter(OutputStream outputStream, FileHasher hasher) throws IOException {
+        this(outputStream, hasher, false);
+    }
+
+    BinaryResultWriter(OutputStream outputStream, FileHasher hasher, boolean approximate) throws IOException {
+        this.outputStream = new DataOutputStream(outputStream);
+        this.outputStream.writeInt(MAGIC);
+        this.outputStream.writeInt(VERSION);
+        writeString(approximate ? hasher.getName() + APPROXIMATE_SUFFIX : hasher.getName());
+        this.outputStream.writeInt(hasher.getDigestLength());
+    }
+
+    @Override
+    public void write(String pathName, byte[] hash) throws IOException {
+        writeString(pathName);
+        outputStream.write(hash);
+    }
+
+    private void writeString(String value) throws IOException {
+        int length = encode(value);
+        outputStream.writeInt(length);
+        outputStream.write(buffer.array(), 0, length);
+    }
+
+    // Encodes into the reused buffer, growing it only for unusually long values
+    private int encode(String value) throws CharacterCodingException {
+        int maxLength = (int) Math.ceil(value.length() * (double) encoder.maxBytesPerChar());
+        if (buffer.capacity() < maxLength) {
+            buffer = ByteBuffer.allocate(maxLength);
+        }
+
+        buffer.clear();
+        encoder.reset();
+        CharBuffer input = CharBuffer.wrap(value);
+        CoderResult result = encoder.encode(input, buffer, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        encoder.flush(buffer);
+        return buffer.position();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+}
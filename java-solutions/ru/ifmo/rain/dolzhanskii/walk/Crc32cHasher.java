@@ -0,0 +1,33 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+class Crc32cHasher implements FileHasher {
+    @Override
+    public String getName() {
+        return "crc32c";
+    }
+
+    @Override
+    public int getDigestLength() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    public Digest newDigest() {
+        return new Digest() {
+            private final CRC32C crc = new CRC32C();
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                crc.update(buffer);
+            }
+
+            @Override
+            public byte[] finish() {
+                return ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array();
+            }
+        };
+    }
+}
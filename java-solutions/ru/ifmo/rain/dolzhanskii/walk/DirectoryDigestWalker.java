@@ -0,0 +1,164 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Walks each tree with fork/join tasks, one per directory, and derives every directory digest
+// from the names and digests of its children, sorted by name, so equal subtrees get equal digests.
+// Results are written in sequential walk order once the tree is complete; directory lines follow
+// their contents and end with a separator. A directory containing an entry that failed to be hashed
+// or listed gets the error hash, like a failed file, since its digest would not reflect its contents.
+class DirectoryDigestWalker implements PathWalker {
+    private static final byte FILE_TAG = 'f';
+    private static final byte DIRECTORY_TAG = 'd';
+
+    private final HashingFileVisitor output;
+    private final FileHashing hashing;
+    private final PathFilter filter;
+    private final ForkJoinPool pool;
+
+    DirectoryDigestWalker(ResultWriter results, int threads, FileHashing hashing, PathFilter filter) {
+        this.output = new HashingFileVisitor(results, hashing);
+        this.hashing = hashing;
+        this.filter = filter;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    @Override
+    public void walk(String pathName) throws IOException {
+        Path root;
+        try {
+            root = Paths.get(pathName);
+        } catch (InvalidPathException e) {
+            output.logHash(pathName, hashing.errorHash(), true);
+            return;
+        }
+
+        Node node = pool.invoke(new NodeTask(root));
+        if (node != null) {
+            write(node);
+        }
+    }
+
+    private void write(Node node) throws IOException {
+        if (node.children != null) {
+            for (Node child : node.children) {
+                write(child);
+            }
+            output.logHash(node.path.toString() + File.separator, node.hash, node.erroneous);
+        } else {
+            output.logHash(node.path.toString(), node.hash, node.erroneous);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        hashing.close();
+    }
+
+    private static class Node {
+        private final Path path;
+        private final byte[] hash;
+        private final boolean erroneous;
+        // Null for files, listing order for directories
+        private final List<Node> children;
+
+        Node(Path path, byte[] hash, boolean erroneous, List<Node> children) {
+            this.path = path;
+            this.hash = hash;
+            this.erroneous = erroneous;
+            this.children = children;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class NodeTask extends RecursiveTask<Node> {
+        private final Path path;
+
+        NodeTask(Path path) {
+            this.path = path;
+        }
+
+        // Null for entries skipped by the filter
+        @Override
+        protected Node compute() {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                return failed();
+            }
+
+            if (!attrs.isDirectory()) {
+                if (!filter.acceptFile(path, attrs)) {
+                    return null;
+                }
+                try {
+                    return new Node(path, hashing.hash(path, attrs), false, null);
+                } catch (IOException e) {
+                    return failed();
+                }
+            }
+
+            if (!filter.acceptDirectory(path)) {
+                return null;
+            }
+
+            List<NodeTask> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    NodeTask task = new NodeTask(child);
+                    task.fork();
+                    tasks.add(task);
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                tasks.forEach(task -> task.cancel(false));
+                return failed();
+            }
+
+            List<Node> children = new ArrayList<>(tasks.size());
+            boolean erroneous = false;
+            for (NodeTask task : tasks) {
+                Node child = task.join();
+                if (child != null) {
+                    children.add(child);
+                    erroneous |= child.erroneous;
+                }
+            }
+            return erroneous ? new Node(path, hashing.errorHash(), true, children)
+                    : new Node(path, digest(children), false, children);
+        }
+
+        private Node failed() {
+            return new Node(path, hashing.errorHash(), true, null);
+        }
+
+        private byte[] digest(List<Node> children) {
+            List<Node> sorted = new ArrayList<>(children);
+            sorted.sort(Comparator.comparing(node -> node.path.getFileName().toString()));
+
+            FileHasher.Digest digest = hashing.getHasher().newDigest();
+            for (Node child : sorted) {
+                digest.update(ByteBuffer.wrap(child.path.getFileName().toString().getBytes(StandardCharsets.UTF_8)));
+                digest.update(ByteBuffer.wrap(new byte[]{0, child.children == null ? FILE_TAG : DIRECTORY_TAG}));
+                digest.update(ByteBuffer.wrap(child.hash));
+            }
+            return digest.finish();
+        }
+    }
+}
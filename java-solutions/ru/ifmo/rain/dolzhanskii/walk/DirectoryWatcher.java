@@ -0,0 +1,160 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// Watches every directory of the walked trees, plus parents of single walked files.
+// Bursts of events are coalesced: a batch is closed after a quiet period without events,
+// or once it has been open for MAX_QUIET_PERIODS quiet periods under a steady stream of events.
+class DirectoryWatcher implements Closeable {
+    private static final int MAX_QUIET_PERIODS = 10;
+
+    private final WatchService service;
+    private final PathFilter filter;
+    private final long quietMillis;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> trees = new HashSet<>();
+    private final Set<Path> files = new HashSet<>();
+
+    DirectoryWatcher(PathFilter filter, long quietMillis) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.filter = filter;
+        this.quietMillis = quietMillis;
+    }
+
+    // Invalid and missing paths are ignored, the walk reports them
+    void register(String pathName) throws IOException {
+        Path root;
+        try {
+            root = Paths.get(pathName);
+        } catch (InvalidPathException e) {
+            return;
+        }
+
+        if (Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+            registerTree(root);
+        } else if (Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            registerDirectory(parentOf(root));
+            files.add(root);
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (filter.isExcluded(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                registerDirectory(dir);
+                trees.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void registerDirectory(Path dir) {
+        try {
+            directories.put(dir.register(service, ENTRY_CREATE, ENTRY_MODIFY), dir);
+        } catch (IOException e) {
+            // Directory is still hashed once, it just is not watched
+            System.err.println("Warning: Unable to watch directory '" + dir + "'");
+        }
+    }
+
+    // Blocks until a batch of created or modified paths is ready.
+    // New directories are registered and returned as a whole instead of their individual files.
+    Set<Path> awaitChanges() throws InterruptedException {
+        Set<Path> changes = new LinkedHashSet<>();
+        Set<Path> created = new HashSet<>();
+        while (changes.isEmpty()) {
+            WatchKey key = service.take();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_QUIET_PERIODS * quietMillis);
+            while (key != null) {
+                collect(key, changes, created);
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                key = remaining <= 0 ? null : service.poll(Math.min(quietMillis, remaining), TimeUnit.MILLISECONDS);
+            }
+
+            // Short-lived files, such as editor backups, are gone by the time the batch is closed
+            changes.removeIf(path -> isCovered(path, created) || !Files.exists(path, LinkOption.NOFOLLOW_LINKS));
+        }
+        return changes;
+    }
+
+    private void collect(WatchKey key, Set<Path> changes, Set<Path> created) {
+        Path dir = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // Events were lost, so everything watched in the directory is rehashed
+                if (trees.contains(dir)) {
+                    changes.add(dir);
+                    created.add(dir);
+                } else {
+                    files.stream().filter(file -> dir.equals(parentOf(file))).forEach(changes::add);
+                }
+                continue;
+            }
+
+            Path path = dir.resolve((Path) event.context());
+            if (!trees.contains(dir) && !files.contains(path)) {
+                continue;
+            }
+            if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                changes.add(path);
+            } else if (event.kind() == ENTRY_CREATE && trees.contains(dir) && !filter.isExcluded(path)) {
+                try {
+                    registerTree(path);
+                } catch (IOException e) {
+                    // Ignored, unreadable subdirectories are reported by the walk
+                }
+                changes.add(path);
+                created.add(path);
+            }
+        }
+
+        if (!key.reset()) {
+            directories.remove(key);
+            trees.remove(dir);
+        }
+    }
+
+    private static Path parentOf(Path path) {
+        Path parent = path.getParent();
+        return parent == null ? Paths.get("") : parent;
+    }
+
+    private static boolean isCovered(Path path, Set<Path> created) {
+        for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+            if (created.contains(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+}
@@ -0,0 +1,222 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+// Finds groups of files with equal contents. Files are grouped by size first, then by a hash of
+// their first PREFIX_SIZE bytes, and only files still colliding after that are hashed in full.
+// Hashes only select candidates, every reported group is confirmed by comparing the files byte by byte.
+// Files are collected by the same traversal as the main walk, so filtering and error reporting match it.
+public class DuplicateFinder extends HashingFileVisitor {
+    private static final String USAGE = "Usage: java DuplicateFinder [-hash ALGORITHM] INPUT_FILE_PATH OUTPUT_FILE_PATH";
+    private static final int PREFIX_SIZE = 4096;
+
+    private final FileHasher hasher;
+    private final Map<Long, List<Path>> bySize = new HashMap<>();
+    // File keys, or real paths where the file system has none, of collected files
+    private final Set<Object> seen = new HashSet<>();
+
+    DuplicateFinder(FileHasher hasher) {
+        super(null, new FileHashing(hasher, null, null));
+        this.hasher = hasher;
+    }
+
+    // Overlapping input lines and hard links lead to the same file, which is collected only once
+    @Override
+    void visitAccepted(Path path, BasicFileAttributes attrs) {
+        if (!attrs.isRegularFile()) {
+            return;
+        }
+        Object key = attrs.fileKey();
+        try {
+            if (key == null) {
+                key = path.toRealPath();
+            }
+        } catch (IOException e) {
+            warn(path.toString());
+            return;
+        }
+        if (seen.add(key)) {
+            bySize.computeIfAbsent(attrs.size(), size -> new ArrayList<>()).add(path);
+        }
+    }
+
+    // Only errors are logged, results are written once all files are collected
+    @Override
+    void logHash(String pathName, byte[] hash, boolean erroneous) {
+        warn(pathName);
+    }
+
+    // Largest files first, as they waste the most space
+    List<Group> findDuplicates() {
+        List<Group> duplicates = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>(bySize.keySet());
+        sizes.sort(Comparator.reverseOrder());
+
+        for (long size : sizes) {
+            List<Path> sameSize = bySize.get(size);
+            if (sameSize.size() < 2) {
+                continue;
+            }
+            groupByHash(sameSize, true).forEach((prefixHash, samePrefix) -> {
+                if (samePrefix.size() < 2) {
+                    return;
+                }
+                // The prefix of a small file is the whole file
+                if (size <= PREFIX_SIZE) {
+                    addEqual(duplicates, prefixHash.array(), samePrefix);
+                    return;
+                }
+                groupByHash(samePrefix, false).forEach((hash, sameHash) -> {
+                    if (sameHash.size() > 1) {
+                        addEqual(duplicates, hash.array(), sameHash);
+                    }
+                });
+            });
+        }
+        return duplicates;
+    }
+
+    // Splits files with equal hashes into classes of equal contents, comparing each file with one file per class
+    private static void addEqual(List<Group> duplicates, byte[] hash, List<Path> candidates) {
+        List<List<Path>> classes = new ArrayList<>();
+        for (Path path : candidates) {
+            try {
+                List<Path> match = null;
+                for (List<Path> equal : classes) {
+                    if (sameContents(equal.get(0), path)) {
+                        match = equal;
+                        break;
+                    }
+                }
+                if (match == null) {
+                    match = new ArrayList<>();
+                    classes.add(match);
+                }
+                match.add(path);
+            } catch (IOException e) {
+                warn(path.toString());
+            }
+        }
+        for (List<Path> equal : classes) {
+            if (equal.size() > 1) {
+                duplicates.add(new Group(hash, equal));
+            }
+        }
+    }
+
+    private static boolean sameContents(Path first, Path second) throws IOException {
+        try (InputStream firstStream = Files.newInputStream(first);
+             InputStream secondStream = Files.newInputStream(second)) {
+            byte[] firstBuffer = new byte[PREFIX_SIZE];
+            byte[] secondBuffer = new byte[PREFIX_SIZE];
+            while (true) {
+                int firstRead = firstStream.readNBytes(firstBuffer, 0, PREFIX_SIZE);
+                int secondRead = secondStream.readNBytes(secondBuffer, 0, PREFIX_SIZE);
+                if (!Arrays.equals(firstBuffer, 0, firstRead, secondBuffer, 0, secondRead)) {
+                    return false;
+                }
+                if (firstRead < PREFIX_SIZE) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private Map<ByteBuffer, List<Path>> groupByHash(List<Path> paths, boolean prefix) {
+        Map<ByteBuffer, List<Path>> groups = new LinkedHashMap<>();
+        for (Path path : paths) {
+            byte[] hash = hashOrNull(path, prefix);
+            if (hash != null) {
+                groups.computeIfAbsent(ByteBuffer.wrap(hash), key -> new ArrayList<>()).add(path);
+            }
+        }
+        return groups;
+    }
+
+    private byte[] hashOrNull(Path path, boolean prefix) {
+        try {
+            return prefix ? hashPrefix(path) : HashingFileVisitor.hashFile(path, hasher);
+        } catch (IOException e) {
+            warn(path.toString());
+            return null;
+        }
+    }
+
+    private byte[] hashPrefix(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(PREFIX_SIZE);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Fill the prefix buffer
+            }
+            FileHasher.Digest digest = hasher.newDigest();
+            digest.update(buffer.flip());
+            return digest.finish();
+        }
+    }
+
+    static class Group {
+        private final byte[] hash;
+        private final List<Path> paths;
+
+        Group(byte[] hash, List<Path> paths) {
+            this.hash = hash;
+            this.paths = paths;
+        }
+    }
+
+    private static void findDuplicates(String inputFileName, String outputFileName, FileHasher hasher)
+            throws RecursiveWalkException {
+        Path outputFilePath = RecursiveWalk.createParentDirectories(outputFileName);
+        DuplicateFinder finder = new DuplicateFinder(hasher);
+
+        try (BufferedReader inputFileReader = Files.newBufferedReader(Paths.get(inputFileName))) {
+            String pathName;
+            while ((pathName = inputFileReader.readLine()) != null) {
+                try {
+                    finder.walk(pathName);
+                } catch (IOException e) {
+                    warn(pathName);
+                }
+            }
+        } catch (InvalidPathException | IOException e) {
+            throw new RecursiveWalkException("Unable to read input file '" + inputFileName + "'", e);
+        }
+
+        // Groups are separated by empty lines
+        try (BufferedWriter outputFileWriter = Files.newBufferedWriter(outputFilePath)) {
+            ResultWriter results = new TextResultWriter(outputFileWriter);
+            boolean first = true;
+            for (Group group : finder.findDuplicates()) {
+                if (!first) {
+                    outputFileWriter.newLine();
+                }
+                first = false;
+                for (Path path : group.paths) {
+                    results.write(path.toString(), group.hash);
+                }
+            }
+        } catch (IOException e) {
+            throw new RecursiveWalkException("Unable to write to output file '" + outputFileName + "'", e);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args == null || Arrays.stream(args).anyMatch(Objects::isNull)
+                || !(args.length == 2 || args.length == 4 && "-hash".equals(args[0]))) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        try {
+            FileHasher hasher = FileHasher.forName(args.length == 4 ? args[1] : FileHasher.DEFAULT);
+            findDuplicates(args[args.length - 2], args[args.length - 1], hasher);
+        } catch (IllegalArgumentException | RecursiveWalkException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
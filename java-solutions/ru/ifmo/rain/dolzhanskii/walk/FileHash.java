@@ -0,0 +1,20 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+
+// Hashing result of a single path waiting to be written
+class FileHash {
+    private final String pathName;
+    private final byte[] hash;
+    private final boolean erroneous;
+
+    FileHash(String pathName, byte[] hash, boolean erroneous) {
+        this.pathName = pathName;
+        this.hash = hash;
+        this.erroneous = erroneous;
+    }
+
+    void writeTo(HashingFileVisitor output) throws IOException {
+        output.logHash(pathName, hash, erroneous);
+    }
+}
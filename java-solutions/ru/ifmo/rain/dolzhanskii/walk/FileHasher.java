@@ -0,0 +1,47 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+interface FileHasher {
+    String DEFAULT = "fnv1";
+
+    // Ordered, so that usage and error messages list algorithms the same way on every run
+    Map<String, Supplier<FileHasher>> HASHERS = hashers();
+
+    private static Map<String, Supplier<FileHasher>> hashers() {
+        Map<String, Supplier<FileHasher>> hashers = new LinkedHashMap<>();
+        hashers.put("fnv1", Fnv1Hasher::new);
+        hashers.put("fnv1a64", Fnv1a64Hasher::new);
+        hashers.put("xxhash64", XxHash64Hasher::new);
+        hashers.put("crc32c", Crc32cHasher::new);
+        hashers.put("sha256", Sha256Hasher::new);
+        return Collections.unmodifiableMap(hashers);
+    }
+
+    static FileHasher forName(String name) {
+        Supplier<FileHasher> hasher = HASHERS.get(name);
+        if (hasher == null) {
+            throw new IllegalArgumentException("Unknown hash algorithm '" + name + "', expected one of "
+                    + HASHERS.keySet());
+        }
+        return hasher.get();
+    }
+
+    String getName();
+
+    int getDigestLength();
+
+    // Digests are single-use and not thread-safe, hashers are
+    Digest newDigest();
+
+    interface Digest {
+        // Consumes all remaining bytes of the buffer
+        void update(ByteBuffer buffer);
+
+        byte[] finish();
+    }
+}
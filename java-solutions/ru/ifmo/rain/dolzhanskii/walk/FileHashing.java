@@ -0,0 +1,119 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Hashes a single visited file according to the run configuration, shared by all walkers.
+// Paths resolving to an already hashed file key (hard links, overlapping input lines) reuse its hash
+// as long as size and modification time are unchanged. Reuse is limited to one batch of walks,
+// so a watching run neither accumulates keys of deleted files nor trusts an inode number reused since.
+class FileHashing implements Closeable {
+    private final FileHasher hasher;
+    private final HashIndex index;
+    private final MerkleHasher merkle;
+    private final int sampleEdgeSize;
+    private final int sampleBlocks;
+    private final Map<Object, Hashed> hashedFiles = new ConcurrentHashMap<>();
+
+    FileHashing(FileHasher hasher, HashIndex index, MerkleHasher merkle) {
+        this(hasher, index, merkle, 0, 0);
+    }
+
+    // Positive sampleEdgeSize switches to approximate sampled hashes, which are neither indexed nor chunked
+    FileHashing(FileHasher hasher, HashIndex index, MerkleHasher merkle, int sampleEdgeSize, int sampleBlocks) {
+        if (sampleEdgeSize > 0 && (index != null || merkle != null)) {
+            throw new IllegalArgumentException("Sampled hashes cannot be indexed or chunked");
+        }
+        this.hasher = hasher;
+        this.index = index;
+        this.merkle = merkle;
+        this.sampleEdgeSize = sampleEdgeSize;
+        this.sampleBlocks = sampleBlocks;
+    }
+
+    FileHasher getHasher() {
+        return hasher;
+    }
+
+    byte[] errorHash() {
+        return new byte[hasher.getDigestLength()];
+    }
+
+    // Reuses the hash stored in the index if the file has not changed since it was recorded
+    byte[] hash(Path path, BasicFileAttributes attrs) throws IOException {
+        boolean chunked = merkle != null && merkle.applies(attrs.size());
+        long chunkSize = chunked ? merkle.getChunkSize() : 0;
+        String pathName = index == null ? null : path.toAbsolutePath().toString();
+
+        if (index != null) {
+            byte[] indexed = index.lookup(pathName, attrs, chunkSize);
+            if (indexed != null) {
+                return indexed;
+            }
+        }
+
+        Object fileKey = attrs.fileKey();
+        Hashed hashed = fileKey == null ? null : hashedFiles.get(fileKey);
+        if (hashed == null || !hashed.matches(attrs)) {
+            hashed = chunked ? hashChunked(path, pathName, attrs, chunkSize)
+                    : new Hashed(attrs, hashWhole(path), null);
+            if (fileKey != null) {
+                hashedFiles.put(fileKey, hashed);
+            }
+        }
+
+        if (index != null) {
+            index.update(pathName, attrs, hashed.hash, hashed.chunks);
+        }
+        return hashed.hash;
+    }
+
+    private byte[] hashWhole(Path path) throws IOException {
+        return sampleEdgeSize > 0 ? HashingFileVisitor.hashSampled(path, hasher, sampleEdgeSize, sampleBlocks)
+                : HashingFileVisitor.hashFile(path, hasher);
+    }
+
+    private Hashed hashChunked(Path path, String pathName, BasicFileAttributes attrs, long chunkSize)
+            throws IOException {
+        if (index == null) {
+            return new Hashed(attrs, merkle.root(merkle.hash(path, null, false)), null);
+        }
+        MerkleHasher.Chunks chunks = merkle.hash(path, index.lookupChunks(pathName, chunkSize), true);
+        return new Hashed(attrs, merkle.root(chunks), chunks);
+    }
+
+    // Forgets file keys hashed so far, called once all walks of a batch are flushed
+    void endBatch() {
+        hashedFiles.clear();
+    }
+
+    @Override
+    public void close() {
+        if (merkle != null) {
+            merkle.close();
+        }
+    }
+
+    private static class Hashed {
+        private final long size;
+        private final FileTime modified;
+        private final byte[] hash;
+        private final MerkleHasher.Chunks chunks;
+
+        Hashed(BasicFileAttributes attrs, byte[] hash, MerkleHasher.Chunks chunks) {
+            this.size = attrs.size();
+            this.modified = attrs.lastModifiedTime();
+            this.hash = hash;
+            this.chunks = chunks;
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && modified.equals(attrs.lastModifiedTime());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.nio.ByteBuffer;
+
+class Fnv1Hasher implements FileHasher {
+    private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    @Override
+    public String getName() {
+        return "fnv1";
+    }
+
+    @Override
+    public int getDigestLength() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    public Digest newDigest() {
+        return new Digest() {
+            private int hash = FNV_OFFSET_BASIS;
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                int hash = this.hash;
+                for (int i = buffer.position(), limit = buffer.limit(); i < limit; i++) {
+                    hash *= FNV_PRIME;
+                    hash ^= Byte.toUnsignedInt(buffer.get(i));
+                }
+                buffer.position(buffer.limit());
+                this.hash = hash;
+            }
+
+            @Override
+            public byte[] finish() {
+                return ByteBuffer.allocate(Integer.BYTES).putInt(hash).array();
+            }
+        };
+    }
+}
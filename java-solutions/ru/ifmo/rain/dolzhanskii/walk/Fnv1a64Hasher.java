@@ -0,0 +1,41 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.nio.ByteBuffer;
+
+class Fnv1a64Hasher implements FileHasher {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    @Override
+    public String getName() {
+        return "fnv1a64";
+    }
+
+    @Override
+    public int getDigestLength() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public Digest newDigest() {
+        return new Digest() {
+            private long hash = FNV_OFFSET_BASIS;
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                long hash = this.hash;
+                for (int i = buffer.position(), limit = buffer.limit(); i < limit; i++) {
+                    hash ^= Byte.toUnsignedLong(buffer.get(i));
+                    hash *= FNV_PRIME;
+                }
+                buffer.position(buffer.limit());
+                this.hash = hash;
+            }
+
+            @Override
+            public byte[] finish() {
+                return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+            }
+        };
+    }
+}
@@ -0,0 +1,244 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Lists directories in parallel with one fork/join task per directory and feeds files to a fixed
+// hashing pool through a bounded queue; when the queue is full, the listing thread hashes the file itself.
+// In walk order, every directory keeps its entries in listing order and the calling thread writes them
+// depth-first as they complete. In completion order, results are written as soon as they are hashed.
+class ForkJoinHashingWalker implements PathWalker {
+    enum Order {
+        WALK, COMPLETION
+    }
+
+    private static final int QUEUED_PER_THREAD = 64;
+
+    private final HashingFileVisitor output;
+    private final FileHashing hashing;
+    private final PathFilter filter;
+    private final Order order;
+    private final ForkJoinPool listers;
+    private final ExecutorService hashers;
+    private volatile IOException writeFailure;
+
+    ForkJoinHashingWalker(ResultWriter results, int threads, FileHashing hashing, PathFilter filter, Order order) {
+        this.output = new HashingFileVisitor(results, hashing);
+        this.hashing = hashing;
+        this.filter = filter;
+        this.order = order;
+        this.listers = new ForkJoinPool(threads);
+        this.hashers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Override
+    public void walk(String pathName) throws IOException {
+        Path root;
+        try {
+            root = Paths.get(pathName);
+        } catch (InvalidPathException e) {
+            output.logHash(pathName, hashing.errorHash(), true);
+            return;
+        }
+
+        Directory top = new Directory();
+        Pending pending = new Pending();
+        ForkJoinTask<?> task = ForkJoinTask.adapt(() -> new ListingTask(top, null, pending).visit(root));
+        try {
+            if (order == Order.WALK) {
+                listers.execute(task);
+                write(top);
+            } else {
+                listers.invoke(task);
+                pending.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for hashing");
+        }
+        checkWriteFailure();
+    }
+
+    private void write(Directory directory) throws IOException {
+        for (Object entry : await(directory.entries)) {
+            if (entry instanceof Directory) {
+                write((Directory) entry);
+            } else {
+                @SuppressWarnings("unchecked")
+                Future<FileHash> result = (Future<FileHash>) entry;
+                await(result).writeTo(output);
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for hashing");
+        } catch (ExecutionException e) {
+            throw new IOException("Hashing task failed", e.getCause());
+        }
+    }
+
+    private void checkWriteFailure() throws IOException {
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+    }
+
+    private FileHash failed(Path path) {
+        return new FileHash(path.toString(), hashing.errorHash(), true);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() {
+        listers.shutdownNow();
+        hashers.shutdownNow();
+        hashing.close();
+    }
+
+    // Entries are results of files and nested directories in listing order, kept in walk order only
+    private static class Directory {
+        private final CompletableFuture<List<Object>> entries = new CompletableFuture<>();
+    }
+
+    // Number of results not written yet in completion order
+    private static class Pending {
+        private int count;
+
+        synchronized void register() {
+            count++;
+        }
+
+        synchronized void arrive() {
+            if (--count == 0) {
+                notifyAll();
+            }
+        }
+
+        synchronized void await() throws InterruptedException {
+            while (count > 0) {
+                wait();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class ListingTask extends RecursiveAction {
+        private final Directory directory;
+        private final Path path;
+        private final Pending pending;
+
+        ListingTask(Directory directory, Path path, Pending pending) {
+            this.directory = directory;
+            this.path = path;
+            this.pending = pending;
+        }
+
+        // Lists a single root entry into the top-level directory
+        void visit(Path root) {
+            List<Object> entries = new ArrayList<>(1);
+            List<ListingTask> subtasks = new ArrayList<>();
+            try {
+                add(root, entries, subtasks);
+            } catch (RuntimeException e) {
+                directory.entries.completeExceptionally(e);
+                throw e;
+            }
+            directory.entries.complete(entries);
+            invokeAll(subtasks);
+        }
+
+        @Override
+        protected void compute() {
+            List<Object> entries = new ArrayList<>();
+            List<ListingTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    add(child, entries, subtasks);
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                // Listing failed as a whole, as with walkFileTree
+                entries.clear();
+                subtasks.clear();
+                emit(entries, CompletableFuture.completedFuture(failed(path)));
+            } catch (RuntimeException e) {
+                // Do not leave the writer waiting for this directory
+                directory.entries.completeExceptionally(e);
+                throw e;
+            }
+            directory.entries.complete(entries);
+            invokeAll(subtasks);
+        }
+
+        private void add(Path child, List<Object> entries, List<ListingTask> subtasks) {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                emit(entries, CompletableFuture.completedFuture(failed(child)));
+                return;
+            }
+
+            if (attrs.isDirectory()) {
+                if (!filter.acceptDirectory(child)) {
+                    return;
+                }
+                Directory nested = new Directory();
+                if (order == Order.WALK) {
+                    entries.add(nested);
+                }
+                subtasks.add(new ListingTask(nested, child, pending));
+            } else if (filter.acceptFile(child, attrs)) {
+                emit(entries, CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return new FileHash(child.toString(), hashing.hash(child, attrs), false);
+                    } catch (IOException e) {
+                        return failed(child);
+                    }
+                }, hashers));
+            }
+        }
+
+        // In completion order results are written right away instead of being kept in the tree
+        private void emit(List<Object> entries, CompletableFuture<FileHash> result) {
+            if (order == Order.WALK) {
+                entries.add(result);
+                return;
+            }
+
+            pending.register();
+            result.whenComplete((hash, e) -> {
+                try {
+                    synchronized (output) {
+                        // Fails the walk like the walk order does, instead of losing the line
+                        if (e != null && writeFailure == null) {
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            writeFailure = new IOException("Hashing task failed", cause);
+                        }
+                        if (hash != null && writeFailure == null) {
+                            hash.writeTo(output);
+                        }
+                    }
+                } catch (IOException ioe) {
+                    writeFailure = ioe;
+                } finally {
+                    pending.arrive();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Append-only log of (path, size, mtime, file key) -> hash records, kept between runs.
+// An index is bound to a single hash algorithm, a log written by another one is discarded.
+// Records of chunked files also keep per-chunk fingerprints and digests.
+// Later records supersede earlier ones. Once superseded records outnumber live ones the log
+// is rewritten, dropping entries of files that were neither visited nor still exist.
+// The log is memory-mapped in segments and never parsed as a whole: loading only skims record
+// boundaries into an open-addressed table of offsets keyed by path, and a lookup decodes just its record.
+class HashIndex {
+    private static final int MAGIC = 0x57414c4b;
+    private static final int VERSION = 3;
+    private static final int COMPACTION_RATIO = 2;
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final Path file;
+    private final FileHasher hasher;
+    // Entries recorded by this process, newer than anything in the mapped log
+    private final Map<String, Entry> updated = new ConcurrentHashMap<>();
+    private final Map<String, Entry> pending = new ConcurrentHashMap<>();
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+    private Mapping mapping;
+    // Offset of the latest record of every path in the log, 0 for an empty slot, and hashes of their paths
+    private long[] offsets;
+    private int[] hashes;
+    private int live;
+    private long records;
+    private boolean damaged;
+
+    private HashIndex(Path file, FileHasher hasher) {
+        this.file = file;
+        this.hasher = hasher;
+    }
+
+    static HashIndex load(Path file, FileHasher hasher) throws IOException {
+        HashIndex index = new HashIndex(file, hasher);
+        if (Files.exists(file)) {
+            index.open();
+        }
+        return index;
+    }
+
+    private void open() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapping = new Mapping(channel);
+        }
+        offsets = new long[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+        live = 0;
+        records = 0;
+
+        Cursor cursor = new Cursor(mapping, 0);
+        try {
+            if (cursor.getInt() != MAGIC || cursor.getInt() != VERSION || !hasher.getName().equals(cursor.getString())) {
+                damaged = true;
+                return;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            damaged = true;
+            return;
+        }
+
+        while (cursor.position < mapping.size) {
+            long offset = cursor.position;
+            try {
+                int length = cursor.getLength();
+                int hash = mapping.hash(cursor.position, length);
+                cursor.skip(length);
+                Entry.skip(cursor, hasher.getDigestLength());
+                put(offset, hash);
+                records++;
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                // Trailing record was cut short by an interrupted run
+                damaged = true;
+                break;
+            }
+        }
+    }
+
+    private void put(long offset, int hash) {
+        if (2 * (live + 1) > offsets.length) {
+            grow();
+        }
+        int mask = offsets.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            if (offsets[slot] == 0) {
+                offsets[slot] = offset;
+                hashes[slot] = hash;
+                live++;
+                return;
+            }
+            if (hashes[slot] == hash && mapping.samePath(offsets[slot], offset)) {
+                offsets[slot] = offset;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldOffsets = offsets;
+        int[] oldHashes = hashes;
+        offsets = new long[2 * oldOffsets.length];
+        hashes = new int[2 * oldHashes.length];
+        int mask = offsets.length - 1;
+        for (int i = 0; i < oldOffsets.length; i++) {
+            if (oldOffsets[i] != 0) {
+                int slot = oldHashes[i] & mask;
+                while (offsets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                offsets[slot] = oldOffsets[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    // Offset of the latest record of the path in the log, 0 if there is none
+    private long find(String pathName) {
+        if (offsets == null || live == 0) {
+            return 0;
+        }
+        byte[] path = pathName.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(path);
+        int mask = offsets.length - 1;
+        for (int slot = hash & mask; offsets[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && mapping.hasPath(offsets[slot], path)) {
+                return offsets[slot];
+            }
+        }
+        return 0;
+    }
+
+    private Entry entry(String pathName) {
+        Entry entry = updated.get(pathName);
+        if (entry != null) {
+            return entry;
+        }
+        long offset = find(pathName);
+        return offset == 0 ? null : Entry.read(new Cursor(mapping, offset), hasher.getDigestLength());
+    }
+
+    // Chunk size is zero for files hashed as a whole
+    byte[] lookup(String pathName, BasicFileAttributes attrs, long chunkSize) {
+        visited.add(pathName);
+        Entry entry = entry(pathName);
+        return entry != null && entry.chunkSize() == chunkSize && entry.matches(attrs) ? entry.hash : null;
+    }
+
+    MerkleHasher.Chunks lookupChunks(String pathName, long chunkSize) {
+        Entry entry = entry(pathName);
+        return entry != null && entry.chunkSize() == chunkSize ? entry.chunks : null;
+    }
+
+    void update(String pathName, BasicFileAttributes attrs, byte[] hash, MerkleHasher.Chunks chunks) {
+        Entry entry = new Entry(pathName, attrs, hash, chunks);
+        visited.add(pathName);
+        updated.put(pathName, entry);
+        pending.put(pathName, entry);
+    }
+
+    void save() throws IOException {
+        long entries = live;
+        for (String pathName : updated.keySet()) {
+            entries += find(pathName) == 0 ? 1 : 0;
+        }
+
+        if (damaged || Files.notExists(file) || records + pending.size() > COMPACTION_RATIO * entries) {
+            compact();
+        } else if (!pending.isEmpty()) {
+            try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)))) {
+                for (Entry entry : pending.values()) {
+                    entry.write(outputStream);
+                }
+            }
+            records += pending.size();
+        }
+        pending.clear();
+    }
+
+    // Streams live records into a new log, then maps it in place of the old one
+    private void compact() throws IOException {
+        Path parentDirectory = file.toAbsolutePath().getParent();
+        if (parentDirectory != null) {
+            Files.createDirectories(parentDirectory);
+        }
+        Path temporary = Files.createTempFile(parentDirectory, file.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(VERSION);
+                writeString(outputStream, hasher.getName());
+                if (offsets != null) {
+                    for (long offset : offsets) {
+                        if (offset == 0) {
+                            continue;
+                        }
+                        Entry entry = Entry.read(new Cursor(mapping, offset), hasher.getDigestLength());
+                        if (!updated.containsKey(entry.pathName)
+                                && (visited.contains(entry.pathName) || exists(entry.pathName))) {
+                            entry.write(outputStream);
+                        }
+                    }
+                }
+                for (Entry entry : updated.values()) {
+                    entry.write(outputStream);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        damaged = false;
+        updated.clear();
+        open();
+    }
+
+    private static boolean exists(String pathName) {
+        try {
+            return Files.exists(Paths.get(pathName));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static int hash(byte[] path) {
+        int hash = 0;
+        for (byte b : path) {
+            hash = 31 * hash + b;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    // Read-only mapping of the whole log in segments, so that logs beyond 2 GB can be addressed
+    private static class Mapping {
+        private final ByteBuffer[] segments;
+        private final long size;
+
+        Mapping(FileChannel channel) throws IOException {
+            size = channel.size();
+            segments = new ByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+        }
+
+        byte get(long position) {
+            return segments[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE));
+        }
+
+        // Big-endian like DataOutput, values may straddle segments
+        long get(long position, int bytes) {
+            long value = 0;
+            for (int i = 0; i < bytes; i++) {
+                value = value << 8 | (get(position + i) & 0xff);
+            }
+            return value;
+        }
+
+        int hash(long position, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + get(position + i);
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        // Records start with the length and bytes of their path, both records were validated while loading
+        boolean hasPath(long offset, byte[] path) {
+            if (get(offset, Integer.BYTES) != path.length) {
+                return false;
+            }
+            for (int i = 0; i < path.length; i++) {
+                if (get(offset + Integer.BYTES + i) != path[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean samePath(long first, long second) {
+            long length = get(first, Integer.BYTES);
+            if (get(second, Integer.BYTES) != length) {
+                return false;
+            }
+            for (long i = Integer.BYTES; i < Integer.BYTES + length; i++) {
+                if (get(first + i) != get(second + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Sequential reads over a mapping, throwing BufferUnderflowException past its end
+    private static class Cursor {
+        private final Mapping mapping;
+        private long position;
+
+        Cursor(Mapping mapping, long position) {
+            this.mapping = mapping;
+            this.position = position;
+        }
+
+        private long take(long bytes) {
+            if (bytes > mapping.size - position) {
+                throw new BufferUnderflowException();
+            }
+            long start = position;
+            position += bytes;
+            return start;
+        }
+
+        int getInt() {
+            return (int) mapping.get(take(Integer.BYTES), Integer.BYTES);
+        }
+
+        long getLong() {
+            return mapping.get(take(Long.BYTES), Long.BYTES);
+        }
+
+        // Length prefix of a string or array that must fit in the rest of the log
+        int getLength() {
+            int length = getInt();
+            if (length < 0 || length > mapping.size - position) {
+                throw new IllegalArgumentException("Invalid length " + length);
+            }
+            return length;
+        }
+
+        void skip(long bytes) {
+            take(bytes);
+        }
+
+        byte[] getBytes(int length) {
+            long start = take(length);
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = mapping.get(start + i);
+            }
+            return bytes;
+        }
+
+        String getString() {
+            return new String(getBytes(getLength()), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class Entry {
+        private final String pathName;
+        private final long size;
+        private final long modified;
+        private final String fileKey;
+        private final byte[] hash;
+        private final MerkleHasher.Chunks chunks;
+
+        private Entry(String pathName, long size, long modified, String fileKey, byte[] hash,
+                      MerkleHasher.Chunks chunks) {
+            this.pathName = pathName;
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+            this.chunks = chunks;
+        }
+
+        Entry(String pathName, BasicFileAttributes attrs, byte[] hash, MerkleHasher.Chunks chunks) {
+            this(pathName, attrs.size(), modified(attrs), String.valueOf(attrs.fileKey()), hash, chunks);
+        }
+
+        long chunkSize() {
+            return chunks == null ? 0 : chunks.chunkSize;
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && modified == modified(attrs)
+                    && Objects.equals(fileKey, String.valueOf(attrs.fileKey()));
+        }
+
+        private static long modified(BasicFileAttributes attrs) {
+            return attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        }
+
+        static Entry read(Cursor cursor, int digestLength) {
+            String pathName = cursor.getString();
+            long size = cursor.getLong();
+            long modified = cursor.getLong();
+            String fileKey = cursor.getString();
+            byte[] hash = cursor.getBytes(digestLength);
+
+            MerkleHasher.Chunks chunks = null;
+            long chunkSize = cursor.getLong();
+            if (chunkSize > 0) {
+                int count = chunkCount(cursor, digestLength);
+                int[] fingerprints = new int[count];
+                byte[][] digests = new byte[count][];
+                for (int i = 0; i < count; i++) {
+                    fingerprints[i] = cursor.getInt();
+                    digests[i] = cursor.getBytes(digestLength);
+                }
+                chunks = new MerkleHasher.Chunks(chunkSize, size, fingerprints, digests);
+            }
+            return new Entry(pathName, size, modified, fileKey, hash, chunks);
+        }
+
+        // Same layout as read, without decoding anything; the path is already consumed
+        static void skip(Cursor cursor, int digestLength) {
+            cursor.skip(2 * Long.BYTES);
+            cursor.skip(cursor.getLength());
+            cursor.skip(digestLength);
+            if (cursor.getLong() > 0) {
+                cursor.skip((long) chunkCount(cursor, digestLength) * (Integer.BYTES + digestLength));
+            }
+        }
+
+        private static int chunkCount(Cursor cursor, int digestLength) {
+            int count = cursor.getInt();
+            if (count < 0 || count > (cursor.mapping.size - cursor.position) / (Integer.BYTES + digestLength)) {
+                throw new IllegalArgumentException("Invalid chunk count " + count);
+            }
+            return count;
+        }
+
+        void write(DataOutput output) throws IOException {
+            writeString(output, pathName);
+            output.writeLong(size);
+            output.writeLong(modified);
+            writeString(output, fileKey);
+            output.write(hash);
+
+            output.writeLong(chunkSize());
+            if (chunks != null) {
+                output.writeInt(chunks.count());
+                for (int i = 0; i < chunks.count(); i++) {
+                    output.writeInt(chunks.fingerprints[i]);
+                    output.write(chunks.digests[i]);
+                }
+            }
+        }
+    }
+}
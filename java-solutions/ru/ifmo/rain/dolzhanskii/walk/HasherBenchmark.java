@@ -0,0 +1,41 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.TreeSet;
+
+// Compares in-memory throughput of all available hash algorithms, isolated from file I/O.
+// Usage: java HasherBenchmark [BUFFER_SIZE_MB [ITERATIONS]]
+class HasherBenchmark {
+    private static final int DEFAULT_SIZE_MB = 256;
+    private static final int DEFAULT_ITERATIONS = 10;
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int BLOCK_SIZE = 8192;
+
+    public static void main(String[] args) throws IOException {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE_MB;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+
+        ByteBuffer data = ByteBuffer.allocateDirect(sizeMb << 20);
+        Random random = new Random(sizeMb);
+        while (data.hasRemaining()) {
+            data.put((byte) random.nextInt());
+        }
+
+        for (String name : new TreeSet<>(FileHasher.HASHERS.keySet())) {
+            FileHasher hasher = FileHasher.forName(name);
+            double seconds = BenchmarkRunner.measure(WARMUP_ITERATIONS, iterations, () -> hash(hasher, data));
+            BenchmarkRunner.report(name, seconds, 1, data.capacity());
+        }
+    }
+
+    // Feeds the data in read-sized blocks, as the streamed file path does
+    private static byte[] hash(FileHasher hasher, ByteBuffer data) {
+        FileHasher.Digest digest = hasher.newDigest();
+        for (int position = 0; position < data.capacity(); position += BLOCK_SIZE) {
+            digest.update(data.slice(position, Math.min(BLOCK_SIZE, data.capacity() - position)));
+        }
+        return digest.finish();
+    }
+}
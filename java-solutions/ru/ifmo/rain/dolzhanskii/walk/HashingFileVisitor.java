@@ -1,66 +1,172 @@
 package ru.ifmo.rain.dolzhanskii.walk;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 
-public class HashingFileVisitor extends SimpleFileVisitor<Path> {
-    /* package-private */ static final int ERROR_HASH = 0;
+public class HashingFileVisitor extends SimpleFileVisitor<Path> implements PathWalker {
+    /* package-private */ static final long MAPPED_THRESHOLD = 64L << 20;
 
-    private Writer outputFileWriter;
+    private static final int BLOCK_SIZE = 8192;
+    private static final long MAPPED_WINDOW_SIZE = 256L << 20;
+    private static final int SAMPLE_BLOCK_SIZE = 4096;
 
-    HashingFileVisitor(Writer fileWriter) {
-        this.outputFileWriter = fileWriter;
+    private final ResultWriter results;
+    private final FileHashing hashing;
+    private final PathFilter filter;
+
+    HashingFileVisitor(ResultWriter results, FileHashing hashing) {
+        this(results, hashing, new PathFilter());
+    }
+
+    HashingFileVisitor(ResultWriter results, FileHashing hashing, PathFilter filter) {
+        this.results = results;
+        this.hashing = hashing;
+        this.filter = filter;
+    }
+
+    @Override
+    public void walk(String pathName) throws IOException {
+        try {
+            Files.walkFileTree(Paths.get(pathName), this);
+        } catch (InvalidPathException e) {
+            logHash(pathName, hashing.errorHash(), true);
+        }
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        return filter.acceptDirectory(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
     }
 
     @Override
     public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
-        int hash;
+        if (filter.acceptFile(path, attrs)) {
+            visitAccepted(path, attrs);
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    // Called for every file that passed the filter
+    void visitAccepted(Path path, BasicFileAttributes attrs) throws IOException {
+        byte[] hash;
         boolean erroneous = false;
 
-        try (BufferedInputStream bufferedInputStream = new BufferedInputStream(Files.newInputStream(path))) {
-            hash = fnvHash(bufferedInputStream);
+        try {
+            hash = hashing.hash(path, attrs);
         } catch (IOException e) {
-            hash = ERROR_HASH;
+            hash = hashing.errorHash();
             erroneous = true;
         }
 
         logHash(path.toString(), hash, erroneous);
-        return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path path, IOException exc) throws IOException {
-        logHash(path.toString(), ERROR_HASH, true);
+        logHash(path.toString(), hashing.errorHash(), true);
         return FileVisitResult.CONTINUE;
     }
 
-    void logHash(String pathName, int hash, boolean erroneous) throws IOException {
+    void logHash(String pathName, byte[] hash, boolean erroneous) throws IOException {
         // Warn if hash value is erroneous
         if (erroneous) {
-            System.err.println("Warning: Failed to read file '" + pathName + "'");
+            warn(pathName);
         }
-        outputFileWriter.write(String.format("%08x %s%n", hash, pathName));
+        results.write(pathName, hash);
     }
 
-    private static int fnvHash(InputStream inputStream) throws IOException {
-        final int FNV_PRIME = 0x01000193;
-        final int BLOCK_SIZE = 8192;
+    static void warn(String pathName) {
+        System.err.println("Warning: Failed to read file '" + pathName + "'");
+    }
 
-        int hash = 0x811c9dc5;
-        int readCount;
-        byte[] block = new byte[BLOCK_SIZE];
+    @Override
+    public void flush() throws IOException {
+        results.flush();
+    }
 
-        while ((readCount = inputStream.read(block)) >= 0) {
-            for (int i = 0; i < readCount; i++) {
-                hash *= FNV_PRIME;
-                hash ^= Byte.toUnsignedInt(block[i]);
+    @Override
+    public void close() {
+        // Result writer is owned by the caller
+        hashing.close();
+    }
+
+    static byte[] hashFile(Path path, FileHasher hasher) throws IOException {
+        return hashFile(path, hasher, MAPPED_THRESHOLD);
+    }
+
+    // Files of at least mappedThreshold bytes are hashed straight out of mapped windows
+    static byte[] hashFile(Path path, FileHasher hasher, long mappedThreshold) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            FileHasher.Digest digest = hasher.newDigest();
+            if (size >= mappedThreshold) {
+                hashMapped(channel, size, digest);
+            } else {
+                hashStreamed(channel, digest);
+            }
+            return digest.finish();
+        }
+    }
+
+    // Approximate hash for change detection: the size, the first and last edgeSize bytes
+    // and blocks evenly spaced SAMPLE_BLOCK_SIZE blocks in between, read with positional reads.
+    // Files too small to be sampled are read whole, so their hashes depend only on the size prefix and contents.
+    static byte[] hashSampled(Path path, FileHasher hasher, int edgeSize, int blocks) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            FileHasher.Digest digest = hasher.newDigest();
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+
+            long middle = size - 2L * edgeSize;
+            if (middle <= (long) blocks * SAMPLE_BLOCK_SIZE) {
+                hashStreamed(channel, digest);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocate(Math.max(edgeSize, SAMPLE_BLOCK_SIZE));
+                hashRange(channel, buffer, 0, edgeSize, digest);
+                long stride = (middle - SAMPLE_BLOCK_SIZE) / (blocks + 1);
+                for (int i = 1; i <= blocks; i++) {
+                    hashRange(channel, buffer, edgeSize + stride * i, SAMPLE_BLOCK_SIZE, digest);
+                }
+                hashRange(channel, buffer, size - edgeSize, edgeSize, digest);
             }
+            return digest.finish();
         }
+    }
+
+    private static void hashRange(FileChannel channel, ByteBuffer buffer, long position, int length,
+                                  FileHasher.Digest digest) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("File was truncated while sampling");
+            }
+        }
+        digest.update(buffer.flip());
+    }
 
-        return hash;
+    private static void hashStreamed(FileChannel channel, FileHasher.Digest digest) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        while (channel.read(block) >= 0) {
+            digest.update(block.flip());
+            block.clear();
+        }
+    }
+
+    private static void hashMapped(FileChannel channel, long size, FileHasher.Digest digest) throws IOException {
+        for (long position = 0; position < size; position += MAPPED_WINDOW_SIZE) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAPPED_WINDOW_SIZE, size - position));
+            digest.update(window);
+        }
     }
-}
\ No newline at end of file
+}
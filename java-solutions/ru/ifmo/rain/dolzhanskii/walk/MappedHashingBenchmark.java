@@ -0,0 +1,56 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+// Compares streamed and memory-mapped FNV hashing throughput on a single generated file.
+// Usage: java MappedHashingBenchmark [FILE_SIZE_MB [ITERATIONS]]
+class MappedHashingBenchmark {
+    private static final int DEFAULT_SIZE_MB = 1024;
+    private static final int DEFAULT_ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE_MB;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+
+        Path file = Files.createTempFile("walk-benchmark", ".bin");
+        try {
+            fill(file, (long) sizeMb << 20);
+            long size = Files.size(file);
+
+            byte[] streamed = measure("streamed", file, size, Long.MAX_VALUE, iterations);
+            byte[] mapped = measure("mapped", file, size, 0, iterations);
+            if (!Arrays.equals(streamed, mapped)) {
+                throw new AssertionError("Streamed and mapped hashes differ");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void fill(Path file, long size) throws IOException {
+        Random random = new Random(size);
+        byte[] block = new byte[1 << 20];
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                outputStream.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+    }
+
+    private static byte[] measure(String name, Path file, long size, long mappedThreshold, int iterations)
+            throws IOException {
+        FileHasher hasher = FileHasher.forName(FileHasher.DEFAULT);
+        byte[][] hash = new byte[1][];
+        double seconds = BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS, iterations,
+                () -> hash[0] = HashingFileVisitor.hashFile(file, hasher, mappedThreshold));
+
+        BenchmarkRunner.report(name, seconds, 1, size);
+        return hash[0];
+    }
+}
@@ -0,0 +1,179 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32C;
+
+// Hashes fixed-size chunks of a file in parallel and combines their digests pairwise, level by level,
+// into a root digest. When fingerprints are kept, a chunk whose CRC32C matches the previous run is not
+// digested again, but only for hashers of at most 32 bits: the root is then no weaker than a 32-bit
+// chunk digest would make it anyway. Wider hashers always digest every chunk, as a linear 32-bit CRC is
+// easy to forge and would silently keep a stale digest; the chunk is read either way, so only the
+// digest computation itself is saved.
+class MerkleHasher implements Closeable {
+    static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+
+    private final FileHasher hasher;
+    private final long chunkSize;
+    private final ForkJoinPool pool;
+    private final boolean reuseDigests;
+
+    MerkleHasher(FileHasher hasher, long chunkSize, int threads) {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be positive and fit into a single mapping");
+        }
+
+        this.hasher = hasher;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(threads);
+        this.reuseDigests = hasher.getDigestLength() <= Integer.BYTES;
+    }
+
+    long getChunkSize() {
+        return chunkSize;
+    }
+
+    boolean applies(long size) {
+        return size > chunkSize;
+    }
+
+    Chunks hash(Path path, Chunks previous, boolean fingerprint) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Chunks chunks = new Chunks(chunkSize, size);
+            if (previous != null && previous.chunkSize != chunkSize) {
+                previous = null;
+            }
+
+            try {
+                pool.invoke(new ChunkTask(channel, chunks, previous, fingerprint, 0, chunks.count()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return chunks;
+        }
+    }
+
+    byte[] root(Chunks chunks) {
+        byte[][] level = chunks.digests;
+        if (level.length == 0) {
+            return hasher.newDigest().finish();
+        }
+
+        while (level.length > 1) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < next.length; i++) {
+                if (2 * i + 1 < level.length) {
+                    FileHasher.Digest digest = hasher.newDigest();
+                    digest.update(ByteBuffer.wrap(level[2 * i]));
+                    digest.update(ByteBuffer.wrap(level[2 * i + 1]));
+                    next[i] = digest.finish();
+                } else {
+                    next[i] = level[2 * i];
+                }
+            }
+            level = next;
+        }
+        return level[0];
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    static class Chunks {
+        final long chunkSize;
+        final long size;
+        final int[] fingerprints;
+        final byte[][] digests;
+
+        Chunks(long chunkSize, long size, int[] fingerprints, byte[][] digests) {
+            this.chunkSize = chunkSize;
+            this.size = size;
+            this.fingerprints = fingerprints;
+            this.digests = digests;
+        }
+
+        private Chunks(long chunkSize, long size) {
+            this(chunkSize, size, new int[count(chunkSize, size)], new byte[count(chunkSize, size)][]);
+        }
+
+        private static int count(long chunkSize, long size) {
+            return Math.toIntExact((size + chunkSize - 1) / chunkSize);
+        }
+
+        int count() {
+            return fingerprints.length;
+        }
+
+        long length(int chunk) {
+            return Math.min(chunkSize, size - chunk * chunkSize);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final Chunks chunks;
+        private final Chunks previous;
+        private final boolean fingerprint;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, Chunks chunks, Chunks previous, boolean fingerprint, int from, int to) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.previous = previous;
+            this.fingerprint = fingerprint;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, chunks, previous, fingerprint, from, middle),
+                        new ChunkTask(channel, chunks, previous, fingerprint, middle, to));
+                return;
+            }
+
+            for (int chunk = from; chunk < to; chunk++) {
+                try {
+                    hashChunk(chunk);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void hashChunk(int chunk) throws IOException {
+            long length = chunks.length(chunk);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk * chunkSize, length);
+
+            if (fingerprint) {
+                CRC32C crc = new CRC32C();
+                crc.update(buffer.duplicate());
+                chunks.fingerprints[chunk] = (int) crc.getValue();
+
+                if (reuseDigests && previous != null && chunk < previous.count() && previous.length(chunk) == length
+                        && previous.fingerprints[chunk] == chunks.fingerprints[chunk]) {
+                    chunks.digests[chunk] = previous.digests[chunk];
+                    return;
+                }
+            }
+
+            FileHasher.Digest digest = hasher.newDigest();
+            digest.update(buffer);
+            chunks.digests[chunk] = digest.finish();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.*;
+
+// Three-stage pipeline: the calling thread traverses, a fixed pool hashes, a single thread writes.
+// Pending results are queued in traversal order, so the output matches the sequential walk.
+class ParallelHashingWalker extends SimpleFileVisitor<Path> implements PathWalker {
+    private static final int PENDING_PER_THREAD = 64;
+    private static final Future<FileHash> END_OF_WALK = CompletableFuture.completedFuture(null);
+
+    private final HashingFileVisitor output;
+    private final FileHashing hashing;
+    private final PathFilter filter;
+    private final ExecutorService hashers;
+    private final BlockingQueue<Future<FileHash>> pending;
+    private final Thread writer;
+    private volatile IOException writeFailure;
+
+    ParallelHashingWalker(ResultWriter results, int threads, FileHashing hashing, PathFilter filter) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+
+        this.output = new HashingFileVisitor(results, hashing);
+        this.hashing = hashing;
+        this.filter = filter;
+        this.hashers = Executors.newFixedThreadPool(threads);
+        this.pending = new ArrayBlockingQueue<>(threads * PENDING_PER_THREAD);
+        this.writer = new Thread(this::writeResults);
+        this.writer.start();
+    }
+
+    @Override
+    public void walk(String pathName) throws IOException {
+        try {
+            Files.walkFileTree(Paths.get(pathName), this);
+        } catch (InvalidPathException e) {
+            enqueue(CompletableFuture.completedFuture(failed(pathName)));
+        }
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        return filter.acceptDirectory(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+        if (!filter.acceptFile(path, attrs)) {
+            return FileVisitResult.CONTINUE;
+        }
+        enqueue(hashers.submit(() -> {
+            try {
+                return new FileHash(path.toString(), hashing.hash(path, attrs), false);
+            } catch (IOException e) {
+                return failed(path.toString());
+            }
+        }));
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path path, IOException exc) throws IOException {
+        enqueue(CompletableFuture.completedFuture(failed(path.toString())));
+        return FileVisitResult.CONTINUE;
+    }
+
+    private FileHash failed(String pathName) {
+        return new FileHash(pathName, hashing.errorHash(), true);
+    }
+
+    private void enqueue(Future<FileHash> result) throws IOException {
+        checkWriteFailure();
+        try {
+            pending.put(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for hashing queue");
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        FlushRequest request = new FlushRequest();
+        enqueue(request);
+        try {
+            request.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output writer");
+        } catch (ExecutionException e) {
+            throw new IOException("Flushing output failed", e.getCause());
+        }
+        checkWriteFailure();
+    }
+
+    private void checkWriteFailure() throws IOException {
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+    }
+
+    private void writeResults() {
+        try {
+            while (true) {
+                Future<FileHash> next = pending.take();
+                if (next == END_OF_WALK) {
+                    return;
+                }
+                if (next instanceof FlushRequest) {
+                    flushOutput();
+                    ((FlushRequest) next).complete(null);
+                    continue;
+                }
+                // Keep draining after a failure so that traversal is never blocked on a full queue
+                if (writeFailure != null) {
+                    next.cancel(false);
+                    continue;
+                }
+
+                try {
+                    FileHash result = next.get();
+                    result.writeTo(output);
+                } catch (ExecutionException e) {
+                    writeFailure = new IOException("Hashing task failed", e.getCause());
+                } catch (IOException e) {
+                    writeFailure = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Ignored
+        }
+    }
+
+    private void flushOutput() {
+        if (writeFailure == null) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                writeFailure = e;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            pending.put(END_OF_WALK);
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output writer");
+        } finally {
+            hashers.shutdownNow();
+            hashing.close();
+        }
+        checkWriteFailure();
+    }
+
+    // Queued behind pending results and completed by the writer once they are flushed
+    private static class FlushRequest extends CompletableFuture<FileHash> {
+    }
+}
@@ -0,0 +1,78 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Include and exclude patterns checked before a directory is listed or a file is opened.
+// Patterns use PathMatcher syntax, glob by default, and match either the file name or the whole path.
+// Excludes apply to directories and files, includes to files only.
+class PathFilter {
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final LongAdder skippedDirectories = new LongAdder();
+    private final LongAdder skippedFiles = new LongAdder();
+    private final LongAdder skippedBytes = new LongAdder();
+
+    void include(String pattern) {
+        includes.add(matcher(pattern));
+    }
+
+    void exclude(String pattern) {
+        excludes.add(matcher(pattern));
+    }
+
+    private static PathMatcher matcher(String pattern) {
+        boolean explicit = pattern.startsWith("glob:") || pattern.startsWith("regex:");
+        return FileSystems.getDefault().getPathMatcher(explicit ? pattern : "glob:" + pattern);
+    }
+
+    boolean isActive() {
+        return !includes.isEmpty() || !excludes.isEmpty();
+    }
+
+    boolean acceptDirectory(Path path) {
+        if (isExcluded(path)) {
+            skippedDirectories.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // Same check as for directories, but not counted as skipped
+    boolean isExcluded(Path path) {
+        return matchesAny(excludes, path);
+    }
+
+    boolean acceptFile(Path path, BasicFileAttributes attrs) {
+        if (matchesAny(excludes, path) || !includes.isEmpty() && !matchesAny(includes, path)) {
+            skippedFiles.increment();
+            skippedBytes.add(attrs.size());
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path path) {
+        if (matchers.isEmpty()) {
+            return false;
+        }
+        Path fileName = path.getFileName();
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path) || fileName != null && matcher.matches(fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Contents of skipped directories are never listed, so only the directories themselves are counted
+    String report() {
+        return String.format("Filters skipped %d directories and %d files (%d bytes not read)",
+                skippedDirectories.sum(), skippedFiles.sum(), skippedBytes.sum());
+    }
+}
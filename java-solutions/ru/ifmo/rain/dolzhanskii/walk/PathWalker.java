@@ -0,0 +1,11 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+interface PathWalker extends Closeable {
+    void walk(String pathName) throws IOException;
+
+    // Returns once results of all walked paths are written and flushed
+    void flush() throws IOException;
+}
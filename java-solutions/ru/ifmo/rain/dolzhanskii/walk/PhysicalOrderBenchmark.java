@@ -0,0 +1,65 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Compares directory-order and inode-order walks with the page cache dropped before every iteration.
+// Dropping caches requires root on Linux, otherwise the numbers are for a warm cache and a notice is printed.
+// Usage: java PhysicalOrderBenchmark [ITERATIONS [SHAPE]]
+class PhysicalOrderBenchmark {
+    private static final int DEFAULT_ITERATIONS = 3;
+    private static final Path DROP_CACHES = Paths.get("/proc/sys/vm/drop_caches");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        SyntheticTree.Shape shape = args.length > 1 ? SyntheticTree.Shape.valueOf(args[1])
+                : SyntheticTree.Shape.TINY_FILES;
+
+        FileHasher hasher = FileHasher.forName(FileHasher.DEFAULT);
+        try (SyntheticTree tree = SyntheticTree.generate(shape)) {
+            System.out.println(shape + ": " + tree.getFiles().size() + " files, " + tree.getBytes() + " bytes");
+            if (!dropCaches()) {
+                System.out.println("Unable to drop page cache, measuring with a warm cache");
+            }
+
+            String root = tree.getRoot().toString();
+            BenchmarkRunner.report("directory order", measureCold(iterations, () -> {
+                try (PathWalker walker = new HashingFileVisitor(new TextResultWriter(Writer.nullWriter()),
+                        new FileHashing(hasher, null, null))) {
+                    walker.walk(root);
+                }
+            }), tree.getFiles().size(), tree.getBytes());
+            BenchmarkRunner.report("physical order", measureCold(iterations, () -> {
+                try (PathWalker walker = new PhysicalOrderWalker(new TextResultWriter(Writer.nullWriter()),
+                        new FileHashing(hasher, null, null), new PathFilter())) {
+                    walker.walk(root);
+                }
+            }), tree.getFiles().size(), tree.getBytes());
+        }
+    }
+
+    private static double measureCold(int iterations, BenchmarkRunner.Operation operation)
+            throws IOException, InterruptedException {
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            dropCaches();
+            long start = System.nanoTime();
+            operation.run();
+            total += System.nanoTime() - start;
+        }
+        return total / 1e9 / iterations;
+    }
+
+    private static boolean dropCaches() throws InterruptedException {
+        try {
+            new ProcessBuilder("sync").inheritIO().start().waitFor();
+            Files.writeString(DROP_CACHES, "3");
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
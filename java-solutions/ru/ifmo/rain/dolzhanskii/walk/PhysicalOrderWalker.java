@@ -0,0 +1,160 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Collects visited files into batches and reads each batch in inode order, a proxy for on-disk locality,
+// to avoid seek storms on spinning disks. Results are written back in walk order.
+// Inode numbers come from the file key when it has the Unix "(dev=...,ino=...)" form, otherwise from
+// the "unix" attribute view. Files without either keep their walk order, with a single warning per walker.
+class PhysicalOrderWalker extends SimpleFileVisitor<Path> implements PathWalker {
+    private static final int BATCH_SIZE = 4096;
+    private static final Pattern FILE_KEY = Pattern.compile("\\(dev=(\\p{XDigit}+),ino=(\\d+)\\)");
+    private static final Comparator<Pending> PHYSICAL_ORDER = Comparator
+            .comparing((Pending pending) -> pending.device)
+            .thenComparing((first, second) -> Long.compareUnsigned(first.inode, second.inode));
+
+    private final HashingFileVisitor output;
+    private final FileHashing hashing;
+    private final PathFilter filter;
+    private final List<Pending> batch = new ArrayList<>();
+    private boolean warned;
+
+    PhysicalOrderWalker(ResultWriter results, FileHashing hashing, PathFilter filter) {
+        this.output = new HashingFileVisitor(results, hashing);
+        this.hashing = hashing;
+        this.filter = filter;
+    }
+
+    @Override
+    public void walk(String pathName) throws IOException {
+        try {
+            Files.walkFileTree(Paths.get(pathName), this);
+        } catch (InvalidPathException e) {
+            batch.add(new Pending(pathName, null, null));
+        }
+        writeBatch();
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        return filter.acceptDirectory(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+        if (filter.acceptFile(path, attrs)) {
+            add(new Pending(path.toString(), path, attrs));
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path path, IOException exc) throws IOException {
+        add(new Pending(path.toString(), null, null));
+        return FileVisitResult.CONTINUE;
+    }
+
+    private void add(Pending pending) throws IOException {
+        batch.add(pending);
+        if (batch.size() >= BATCH_SIZE) {
+            writeBatch();
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        List<Pending> physical = new ArrayList<>(batch);
+        physical.sort(PHYSICAL_ORDER);
+        for (Pending pending : physical) {
+            pending.hash();
+        }
+
+        for (Pending pending : batch) {
+            output.logHash(pending.pathName, pending.hash, pending.erroneous);
+        }
+        batch.clear();
+    }
+
+    // Device and inode numbers, null if they are unknown
+    private long[] location(Path path, BasicFileAttributes attrs) {
+        Object fileKey = attrs.fileKey();
+        if (fileKey != null) {
+            Matcher matcher = FILE_KEY.matcher(fileKey.toString());
+            if (matcher.matches()) {
+                return new long[]{Long.parseUnsignedLong(matcher.group(1), 16), Long.parseUnsignedLong(matcher.group(2))};
+            }
+        }
+
+        if (path.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+            try {
+                Map<String, Object> unix = Files.readAttributes(path, "unix:dev,ino", LinkOption.NOFOLLOW_LINKS);
+                return new long[]{(Long) unix.get("dev"), (Long) unix.get("ino")};
+            } catch (IOException | UnsupportedOperationException | IllegalArgumentException | ClassCastException e) {
+                // Falls back to walk order below
+            }
+        }
+
+        if (!warned) {
+            warned = true;
+            System.err.println("Warning: Inode numbers are unavailable, files are read in walk order");
+        }
+        return null;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() {
+        hashing.close();
+    }
+
+    private class Pending {
+        private final String pathName;
+        private final Path path;
+        private final BasicFileAttributes attrs;
+        private final long device;
+        private final long inode;
+        private byte[] hash;
+        private boolean erroneous;
+
+        // Null path marks an entry that has already failed
+        Pending(String pathName, Path path, BasicFileAttributes attrs) {
+            this.pathName = pathName;
+            this.path = path;
+            this.attrs = attrs;
+
+            long[] location = path == null ? null : location(path, attrs);
+            this.device = location == null ? 0 : location[0];
+            this.inode = location == null ? 0 : location[1];
+        }
+
+        void hash() {
+            if (path != null) {
+                try {
+                    hash = hashing.hash(path, attrs);
+                    return;
+                } catch (IOException e) {
+                    // Reported as erroneous below
+                }
+            }
+            hash = hashing.errorHash();
+            erroneous = true;
+        }
+    }
+}
@@ -2,46 +2,59 @@ package ru.ifmo.rain.dolzhanskii.walk;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
 
 public class RecursiveWalk {
-    private static void recursiveWalk(String inputFileName, String outputFileName) throws RecursiveWalkException {
-        // Create parent directories
-        Path outputFilePath;
-        try {
-            outputFilePath = Paths.get(outputFileName);
-            Path parentDirectory = outputFilePath.getParent();
-            if (parentDirectory != null) {
-                Files.createDirectories(parentDirectory);
-            }
-        } catch (InvalidPathException | IOException e) {
-            throw new RecursiveWalkException("Unable to create output file parent directories '" + outputFileName + "'");
-        }
+    private static void recursiveWalk(WalkOptions options) throws RecursiveWalkException {
+        String inputFileName = options.getInputFileName();
+        String outputFileName = options.getOutputFileName();
+
+        Path outputFilePath = createParentDirectories(outputFileName);
+        HashIndex index = loadIndex(options.getIndexFileName(), options.getHasher());
 
         // Initialize input and output streams
         try (BufferedReader inputFileReader = Files.newBufferedReader(Paths.get(inputFileName))) {
-            try (BufferedWriter outputFileWriter = Files.newBufferedWriter(outputFilePath)) {
-                HashingFileVisitor visitor = new HashingFileVisitor(outputFileWriter);
-                while (true) {
-                    String pathName;
-                    try {
-                        pathName = inputFileReader.readLine();
-                    } catch (IOException e) {
-                        throw new RecursiveWalkException("Reading input file failure '" + inputFileName + "'", e);
-                    }
+            try (ResultWriter results = ResultWriter.open(outputFilePath, options.getFormat(), options.getHasher(),
+                    options.getSampleEdgeSize() > 0)) {
+                FileHashing hashing = createHashing(options, index);
+                try (PathWalker walker = createWalker(results, options, hashing);
+                     DirectoryWatcher watcher = options.isWatch()
+                             ? new DirectoryWatcher(options.getFilter(), options.getWatchDelay()) : null) {
+                    while (true) {
+                        String pathName;
+                        try {
+                            pathName = inputFileReader.readLine();
+                        } catch (IOException e) {
+                            throw new RecursiveWalkException("Reading input file failure '" + inputFileName + "'", e);
+                        }
 
-                    if (pathName == null) {
-                        break;
-                    }
+                        if (pathName == null) {
+                            break;
+                        }
+
+                        // Directories are watched before they are walked, so no change in between is missed
+                        if (watcher != null) {
+                            try {
+                                watcher.register(pathName);
+                            } catch (IOException e) {
+                                throw new RecursiveWalkException("Unable to watch '" + pathName + "'", e);
+                            }
+                        }
 
-                    try {
                         try {
-                            Files.walkFileTree(Paths.get(pathName), visitor);
-                        } catch (InvalidPathException e) {
-                            visitor.logHash(pathName, HashingFileVisitor.ERROR_HASH, true);
+                            walker.walk(pathName);
+                        } catch (IOException e) {
+                            throw new RecursiveWalkException("Unable to write to output file '" + outputFileName + "'", e);
                         }
-                    } catch (IOException e) {
-                        throw new RecursiveWalkException("Unable to write to output file '" + outputFileName + "'", e);
                     }
+
+                    if (watcher != null) {
+                        watch(watcher, walker, hashing, index, options);
+                    }
+                } catch (IOException e) {
+                    throw new RecursiveWalkException("Unable to write to output file '" + outputFileName + "'", e);
                 }
             } catch (IOException e) {
                 throw new RecursiveWalkException("Unable to create output file '" + outputFileName + "'" , e);
@@ -49,17 +62,111 @@ public class RecursiveWalk {
         } catch (InvalidPathException | IOException e) {
             throw new RecursiveWalkException("Unable to open input file '" + inputFileName + "'", e);
         }
+
+        if (options.getFilter().isActive()) {
+            System.out.println(options.getFilter().report());
+        }
+
+        saveIndex(index, options);
+    }
+
+    // Runs until interrupted, each batch of changes is walked again and flushed as a whole
+    private static void watch(DirectoryWatcher watcher, PathWalker walker, FileHashing hashing, HashIndex index,
+                              WalkOptions options) throws IOException, RecursiveWalkException {
+        while (true) {
+            walker.flush();
+            hashing.endBatch();
+            saveIndex(index, options);
+
+            Set<Path> changes;
+            try {
+                changes = watcher.awaitChanges();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (Path path : changes) {
+                walker.walk(path.toString());
+            }
+        }
+    }
+
+    private static void saveIndex(HashIndex index, WalkOptions options) throws RecursiveWalkException {
+        if (index != null) {
+            try {
+                index.save();
+            } catch (IOException e) {
+                throw new RecursiveWalkException("Unable to save hash index '" + options.getIndexFileName() + "'", e);
+            }
+        }
+    }
+
+    static Path createParentDirectories(String outputFileName) throws RecursiveWalkException {
+        try {
+            Path outputFilePath = Paths.get(outputFileName);
+            Path parentDirectory = outputFilePath.getParent();
+            if (parentDirectory != null) {
+                Files.createDirectories(parentDirectory);
+            }
+            return outputFilePath;
+        } catch (InvalidPathException | IOException e) {
+            throw new RecursiveWalkException("Unable to create output file parent directories '" + outputFileName + "'");
+        }
+    }
+
+    private static HashIndex loadIndex(String indexFileName, FileHasher hasher) throws RecursiveWalkException {
+        if (indexFileName == null) {
+            return null;
+        }
+        try {
+            return HashIndex.load(Paths.get(indexFileName), hasher);
+        } catch (InvalidPathException | IOException e) {
+            throw new RecursiveWalkException("Unable to load hash index '" + indexFileName + "'", e);
+        }
+    }
+
+    private static FileHashing createHashing(WalkOptions options, HashIndex index) {
+        MerkleHasher merkle = options.getChunkSize() == 0 ? null
+                : new MerkleHasher(options.getHasher(), options.getChunkSize(), options.getThreads());
+        return new FileHashing(options.getHasher(), index, merkle,
+                options.getSampleEdgeSize(), options.getSampleBlocks());
+    }
+
+    private static PathWalker createWalker(ResultWriter results, WalkOptions options, FileHashing hashing) {
+        PathFilter filter = options.getFilter();
+
+        if (options.isDirectoryDigests()) {
+            return new DirectoryDigestWalker(results, options.getThreads(), hashing, filter);
+        } else if (options.isParallelListing()) {
+            return new ForkJoinHashingWalker(results, options.getThreads(), hashing, filter,
+                    options.getOrder());
+        } else if (options.isPhysicalOrder()) {
+            return new PhysicalOrderWalker(results, hashing, filter);
+        } else if (options.getThreads() > 1) {
+            return new ParallelHashingWalker(results, options.getThreads(), hashing, filter);
+        } else {
+            return new HashingFileVisitor(results, hashing, filter);
+        }
     }
 
     public static void main(String[] args) {
         // Validate arguments
-        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
-            System.out.println("Usage: java RecursiveWalk INPUT_FILE_PATH OUTPUT_FILE_PATH");
+        if (args == null || Arrays.stream(args).anyMatch(Objects::isNull)) {
+            System.out.println(WalkOptions.USAGE);
+            return;
+        }
+
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args);
+        } catch (RecursiveWalkException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.out.println(WalkOptions.USAGE);
             return;
         }
 
         try {
-            recursiveWalk(args[0], args[1]);
+            recursiveWalk(options);
         } catch (RecursiveWalkException e) {
             System.err.println("Error: " + e.getMessage());
         }
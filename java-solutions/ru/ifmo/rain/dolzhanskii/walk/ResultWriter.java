@@ -0,0 +1,34 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+interface ResultWriter extends Closeable, Flushable {
+    enum Format {
+        TEXT, BINARY
+    }
+
+    static ResultWriter open(Path path, Format format, FileHasher hasher) throws IOException {
+        return open(path, format, hasher, false);
+    }
+
+    static ResultWriter open(Path path, Format format, FileHasher hasher, boolean approximate) throws IOException {
+        OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path));
+        try {
+            switch (format) {
+                case BINARY:
+                    return new BinaryResultWriter(outputStream, hasher, approximate);
+                case TEXT:
+                default:
+                    return new TextResultWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), approximate);
+            }
+        } catch (IOException e) {
+            outputStream.close();
+            throw e;
+        }
+    }
+
+    void write(String pathName, byte[] hash) throws IOException;
+}
@@ -0,0 +1,39 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+// Compares exact and sampled hashing throughput over generated huge files.
+// Throughput is reported in file bytes covered per second, not bytes actually read.
+// Usage: java SampledHashingBenchmark [EDGE_KB [BLOCKS [ITERATIONS]]]
+class SampledHashingBenchmark {
+    private static final int DEFAULT_EDGE_KB = 64;
+    private static final int DEFAULT_BLOCKS = 16;
+    private static final int DEFAULT_ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int edgeSize = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_EDGE_KB) << 10;
+        int blocks = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BLOCKS;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ITERATIONS;
+
+        FileHasher hasher = FileHasher.forName(FileHasher.DEFAULT);
+        try (SyntheticTree tree = SyntheticTree.generate(SyntheticTree.Shape.HUGE_FILES)) {
+            List<Path> files = tree.getFiles();
+            System.out.println(files.size() + " files, " + tree.getBytes() + " bytes");
+
+            BenchmarkRunner.report("exact", BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS,
+                    iterations, () -> {
+                        for (Path file : files) {
+                            HashingFileVisitor.hashFile(file, hasher);
+                        }
+                    }), files.size(), tree.getBytes());
+            BenchmarkRunner.report("sampled", BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS,
+                    iterations, () -> {
+                        for (Path file : files) {
+                            HashingFileVisitor.hashSampled(file, hasher, edgeSize, blocks);
+                        }
+                    }), files.size(), tree.getBytes());
+        }
+    }
+}
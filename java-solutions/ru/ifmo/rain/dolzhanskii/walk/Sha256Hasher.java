@@ -0,0 +1,43 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+class Sha256Hasher implements FileHasher {
+    private static final String ALGORITHM = "SHA-256";
+    private static final int DIGEST_LENGTH = 32;
+
+    @Override
+    public String getName() {
+        return "sha256";
+    }
+
+    @Override
+    public int getDigestLength() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    public Digest newDigest() {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new AssertionError(e);
+        }
+
+        return new Digest() {
+            @Override
+            public void update(ByteBuffer buffer) {
+                messageDigest.update(buffer);
+            }
+
+            @Override
+            public byte[] finish() {
+                return messageDigest.digest();
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Generated directory tree of a given shape used by the walk benchmarks
+class SyntheticTree implements AutoCloseable {
+    enum Shape {
+        TINY_FILES, HUGE_FILES, DEEP_NESTING, UNREADABLE
+    }
+
+    private static final int TINY_FILE_COUNT = 20_000;
+    private static final int TINY_FILE_SIZE = 256;
+    private static final int TINY_FILES_PER_DIRECTORY = 1000;
+    private static final int HUGE_FILE_COUNT = 4;
+    private static final long HUGE_FILE_SIZE = 256L << 20;
+    private static final int NESTING_DEPTH = 200;
+    private static final int NESTING_BRANCHES = 10;
+    private static final int UNREADABLE_FILE_COUNT = 2000;
+
+    private final Path root;
+    private final List<Path> files = new ArrayList<>();
+    private final Random random = new Random(0);
+    private long bytes;
+
+    private SyntheticTree(Path root) {
+        this.root = root;
+    }
+
+    static SyntheticTree generate(Shape shape) throws IOException {
+        SyntheticTree tree = new SyntheticTree(Files.createTempDirectory("walk-benchmark-" + shape));
+        switch (shape) {
+            case TINY_FILES:
+                for (int i = 0; i < TINY_FILE_COUNT; i++) {
+                    tree.file(tree.root.resolve("d" + i / TINY_FILES_PER_DIRECTORY).resolve("f" + i), TINY_FILE_SIZE);
+                }
+                break;
+            case HUGE_FILES:
+                for (int i = 0; i < HUGE_FILE_COUNT; i++) {
+                    tree.file(tree.root.resolve("f" + i), HUGE_FILE_SIZE);
+                }
+                break;
+            case DEEP_NESTING:
+                for (int branch = 0; branch < NESTING_BRANCHES; branch++) {
+                    Path directory = tree.root.resolve("b" + branch);
+                    for (int depth = 0; depth < NESTING_DEPTH; depth++) {
+                        directory = directory.resolve("n");
+                        tree.file(directory.resolve("f"), TINY_FILE_SIZE);
+                    }
+                }
+                break;
+            case UNREADABLE:
+                for (int i = 0; i < UNREADABLE_FILE_COUNT; i++) {
+                    Path file = tree.root.resolve("u" + i);
+                    if (i % 2 == 0) {
+                        tree.file(file, TINY_FILE_SIZE);
+                        tree.unreadable(file);
+                    } else {
+                        Files.createSymbolicLink(file, tree.root.resolve("missing" + i));
+                        tree.files.add(file);
+                    }
+                }
+                break;
+        }
+        return tree;
+    }
+
+    private void file(Path path, long size) throws IOException {
+        Files.createDirectories(path.getParent());
+        byte[] block = new byte[(int) Math.min(size, 1 << 20)];
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                outputStream.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+        files.add(path);
+        bytes += size;
+    }
+
+    private void unreadable(Path path) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("---------"));
+        } catch (UnsupportedOperationException e) {
+            // Non-POSIX file system, entries stay readable
+        }
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    List<Path> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// Writes "<hex hash> <path>" lines, encoding hashes into a reused buffer instead of formatting.
+// Approximate hashes are prefixed with APPROXIMATE_MARKER.
+class TextResultWriter implements ResultWriter {
+    static final char APPROXIMATE_MARKER = '~';
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer writer;
+    private final boolean approximate;
+    private char[] buffer = new char[2 * Long.BYTES + 1];
+
+    TextResultWriter(Writer writer) {
+        this(writer, false);
+    }
+
+    TextResultWriter(Writer writer, boolean approximate) {
+        this.writer = writer;
+        this.approximate = approximate;
+    }
+
+    @Override
+    public void write(String pathName, byte[] hash) throws IOException {
+        if (approximate) {
+            writer.write(APPROXIMATE_MARKER);
+        }
+        int length = encodeHex(hash);
+        buffer[length] = ' ';
+        writer.write(buffer, 0, length + 1);
+        writer.write(pathName);
+        writer.write(LINE_SEPARATOR);
+    }
+
+    private int encodeHex(byte[] hash) {
+        if (buffer.length <= 2 * hash.length) {
+            buffer = new char[2 * hash.length + 1];
+        }
+        for (int i = 0; i < hash.length; i++) {
+            buffer[2 * i] = HEX_DIGITS[(hash[i] >>> 4) & 0xf];
+            buffer[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return 2 * hash.length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,88 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Measures full walks, file hashing alone and result output alone over generated trees.
+// Usage: java WalkBenchmark [ITERATIONS [SHAPE...]]
+class WalkBenchmark {
+    private static final int DEFAULT_ITERATIONS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        SyntheticTree.Shape[] shapes = SyntheticTree.Shape.values();
+        if (args.length > 1) {
+            shapes = new SyntheticTree.Shape[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                shapes[i - 1] = SyntheticTree.Shape.valueOf(args[i]);
+            }
+        }
+
+        // Unreadable entries would otherwise flood the console with warnings
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(PrintStream.nullOutputStream()));
+        try {
+            for (SyntheticTree.Shape shape : shapes) {
+                try (SyntheticTree tree = SyntheticTree.generate(shape)) {
+                    benchmark(shape.toString(), tree, iterations);
+                }
+            }
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    private static void benchmark(String name, SyntheticTree tree, int iterations) throws IOException {
+        System.out.println(name + ": " + tree.getFiles().size() + " files, " + tree.getBytes() + " bytes");
+        FileHasher hasher = FileHasher.forName(FileHasher.DEFAULT);
+        long files = tree.getFiles().size();
+        long bytes = tree.getBytes();
+
+        Path output = Files.createTempFile("walk-benchmark", ".out");
+        try {
+            BenchmarkRunner.report("walk", BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS,
+                    iterations, () -> {
+                        try (ResultWriter results = ResultWriter.open(output, ResultWriter.Format.TEXT, hasher)) {
+                            new HashingFileVisitor(results, new FileHashing(hasher, null, null)).walk(tree.getRoot().toString());
+                        }
+                    }), files, bytes);
+        } finally {
+            Files.deleteIfExists(output);
+        }
+
+        BenchmarkRunner.report("hash", BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS,
+                iterations, () -> hashAll(tree.getFiles(), hasher)), files, bytes);
+
+        BenchmarkRunner.report("output (text)", BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS,
+                iterations, () -> writeAll(tree.getFiles(), new TextResultWriter(Writer.nullWriter()), hasher)),
+                files, 0);
+        BenchmarkRunner.report("output (binary)", BenchmarkRunner.measure(BenchmarkRunner.DEFAULT_WARMUP_ITERATIONS,
+                iterations, () -> writeAll(tree.getFiles(),
+                        new BinaryResultWriter(OutputStream.nullOutputStream(), hasher), hasher)),
+                files, 0);
+    }
+
+    private static void writeAll(List<Path> files, ResultWriter results, FileHasher hasher) throws IOException {
+        byte[] hash = new FileHashing(hasher, null, null).errorHash();
+        try (results) {
+            for (Path file : files) {
+                results.write(file.toString(), hash);
+            }
+        }
+    }
+
+    private static void hashAll(List<Path> files, FileHasher hasher) {
+        for (Path file : files) {
+            try {
+                HashingFileVisitor.hashFile(file, hasher);
+            } catch (IOException e) {
+                // Unreadable entries are part of the workload
+            }
+        }
+    }
+}
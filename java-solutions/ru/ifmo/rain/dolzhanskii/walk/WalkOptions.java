@@ -0,0 +1,242 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Locale;
+
+class WalkOptions {
+    private static final int DEFAULT_WATCH_DELAY = 200;
+    private static final int DEFAULT_SAMPLE_BLOCKS = 16;
+
+    static final String USAGE = "Usage: java RecursiveWalk [OPTIONS] INPUT_FILE_PATH OUTPUT_FILE_PATH" + String.format("%n")
+            + "  -threads N               Hash with N threads" + String.format("%n")
+            + "  -index INDEX_FILE_PATH   Reuse hashes of unchanged files between runs" + String.format("%n")
+            + "  -hash ALGORITHM          One of " + FileHasher.HASHERS.keySet() + String.format("%n")
+            + "  -format text|binary      Output format" + String.format("%n")
+            + "  -chunk SIZE_MB           Hash files larger than SIZE_MB as chunked Merkle trees" + String.format("%n")
+            + "  -dirs                    Also emit bottom-up digests of directories" + String.format("%n")
+            + "  -parallel-listing        List directories in parallel with fork/join tasks" + String.format("%n")
+            + "  -order walk|completion   Output order for parallel listing" + String.format("%n")
+            + "  -include PATTERN         Hash only files matching PATTERN, may be repeated" + String.format("%n")
+            + "  -exclude PATTERN         Skip files and directories matching PATTERN, may be repeated" + String.format("%n")
+            + "                           Patterns are globs, or 'regex:...', matched against names and paths" + String.format("%n")
+            + "  -watch                   Keep watching walked directories and emit lines for changed files" + String.format("%n")
+            + "  -watch-delay MS          Quiet period that closes a batch of changes, " + DEFAULT_WATCH_DELAY + " by default" + String.format("%n")
+            + "  -sample EDGE_KB          Approximate hashes of size, first and last EDGE_KB and sampled blocks" + String.format("%n")
+            + "  -sample-blocks N         Number of evenly spaced blocks to sample, " + DEFAULT_SAMPLE_BLOCKS + " by default" + String.format("%n")
+            + "  -physical-order          Read batches of files in inode order to reduce disk seeks";
+
+    private String inputFileName;
+    private String outputFileName;
+    private int threads = 1;
+    private String indexFileName;
+    private FileHasher hasher = FileHasher.forName(FileHasher.DEFAULT);
+    private ResultWriter.Format format = ResultWriter.Format.TEXT;
+    private long chunkSize;
+    private boolean directoryDigests;
+    private boolean parallelListing;
+    private ForkJoinHashingWalker.Order order = ForkJoinHashingWalker.Order.WALK;
+    private final PathFilter filter = new PathFilter();
+    private boolean watch;
+    private int watchDelay = DEFAULT_WATCH_DELAY;
+    private int sampleEdgeSize;
+    private int sampleBlocks = DEFAULT_SAMPLE_BLOCKS;
+    private boolean physicalOrder;
+
+    private WalkOptions() {
+    }
+
+    static WalkOptions parse(String[] args) throws RecursiveWalkException {
+        WalkOptions options = new WalkOptions();
+        Deque<String> queue = new ArrayDeque<>(Arrays.asList(args));
+        while (!queue.isEmpty() && queue.peekFirst().startsWith("-")) {
+            String option = queue.removeFirst();
+            String value;
+            switch (option) {
+                case "-threads":
+                    options.threads = parsePositive(option, nextValue(queue, option));
+                    break;
+                case "-index":
+                    options.indexFileName = nextValue(queue, option);
+                    break;
+                case "-hash":
+                    value = nextValue(queue, option);
+                    try {
+                        options.hasher = FileHasher.forName(value);
+                    } catch (IllegalArgumentException e) {
+                        throw new RecursiveWalkException(e.getMessage());
+                    }
+                    break;
+                case "-format":
+                    value = nextValue(queue, option);
+                    try {
+                        options.format = ResultWriter.Format.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new RecursiveWalkException("Unknown output format '" + value + "'");
+                    }
+                    break;
+                case "-chunk":
+                    options.chunkSize = (long) parsePositive(option, nextValue(queue, option)) << 20;
+                    if (options.chunkSize > MerkleHasher.MAX_CHUNK_SIZE) {
+                        throw new RecursiveWalkException("Chunk size must not exceed "
+                                + (MerkleHasher.MAX_CHUNK_SIZE >> 20) + " MB");
+                    }
+                    break;
+                case "-dirs":
+                    options.directoryDigests = true;
+                    break;
+                case "-parallel-listing":
+                    options.parallelListing = true;
+                    break;
+                case "-order":
+                    value = nextValue(queue, option);
+                    try {
+                        options.order = ForkJoinHashingWalker.Order.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new RecursiveWalkException("Unknown output order '" + value + "'");
+                    }
+                    break;
+                case "-include":
+                case "-exclude":
+                    value = nextValue(queue, option);
+                    try {
+                        if (option.equals("-include")) {
+                            options.filter.include(value);
+                        } else {
+                            options.filter.exclude(value);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        throw new RecursiveWalkException("Invalid pattern '" + value + "'", e);
+                    }
+                    break;
+                case "-watch":
+                    options.watch = true;
+                    break;
+                case "-watch-delay":
+                    options.watchDelay = parsePositive(option, nextValue(queue, option));
+                    break;
+                case "-sample":
+                    value = nextValue(queue, option);
+                    int edgeKb = parsePositive(option, value);
+                    if (edgeKb > Integer.MAX_VALUE >> 10) {
+                        throw new RecursiveWalkException("Sample edge size is too large '" + value + "'");
+                    }
+                    options.sampleEdgeSize = edgeKb << 10;
+                    break;
+                case "-sample-blocks":
+                    options.sampleBlocks = parsePositive(option, nextValue(queue, option));
+                    break;
+                case "-physical-order":
+                    options.physicalOrder = true;
+                    break;
+                default:
+                    throw new RecursiveWalkException("Unknown option '" + option + "'");
+            }
+        }
+
+        if (options.order != ForkJoinHashingWalker.Order.WALK && !options.parallelListing) {
+            throw new RecursiveWalkException("Output order can only be changed with parallel listing");
+        }
+        if (options.watch && options.directoryDigests) {
+            throw new RecursiveWalkException("Watch mode cannot be combined with directory digests");
+        }
+        if (options.sampleEdgeSize > 0 && (options.indexFileName != null || options.chunkSize > 0)) {
+            throw new RecursiveWalkException("Sampled hashes cannot be combined with an index or chunking");
+        }
+        if (options.physicalOrder && (options.threads > 1 || options.parallelListing || options.directoryDigests)) {
+            throw new RecursiveWalkException("Physical order reads cannot be combined with parallel walks or directory digests");
+        }
+        if (queue.size() != 2) {
+            throw new RecursiveWalkException("Expected input and output file paths");
+        }
+        options.inputFileName = queue.removeFirst();
+        options.outputFileName = queue.removeFirst();
+        return options;
+    }
+
+    private static String nextValue(Deque<String> queue, String option) throws RecursiveWalkException {
+        if (queue.isEmpty()) {
+            throw new RecursiveWalkException("Missing value for option '" + option + "'");
+        }
+        return queue.removeFirst();
+    }
+
+    private static int parsePositive(String option, String value) throws RecursiveWalkException {
+        try {
+            int result = Integer.parseInt(value);
+            if (result <= 0) {
+                throw new RecursiveWalkException("Option '" + option + "' must be positive");
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new RecursiveWalkException("Invalid integer value for option '" + option + "'", e);
+        }
+    }
+
+    String getInputFileName() {
+        return inputFileName;
+    }
+
+    String getOutputFileName() {
+        return outputFileName;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    String getIndexFileName() {
+        return indexFileName;
+    }
+
+    FileHasher getHasher() {
+        return hasher;
+    }
+
+    ResultWriter.Format getFormat() {
+        return format;
+    }
+
+    // Zero if files are hashed as a whole
+    long getChunkSize() {
+        return chunkSize;
+    }
+
+    boolean isDirectoryDigests() {
+        return directoryDigests;
+    }
+
+    boolean isParallelListing() {
+        return parallelListing;
+    }
+
+    ForkJoinHashingWalker.Order getOrder() {
+        return order;
+    }
+
+    PathFilter getFilter() {
+        return filter;
+    }
+
+    boolean isWatch() {
+        return watch;
+    }
+
+    int getWatchDelay() {
+        return watchDelay;
+    }
+
+    // Zero if files are hashed exactly
+    int getSampleEdgeSize() {
+        return sampleEdgeSize;
+    }
+
+    int getSampleBlocks() {
+        return sampleBlocks;
+    }
+
+    boolean isPhysicalOrder() {
+        return physicalOrder;
+    }
+}
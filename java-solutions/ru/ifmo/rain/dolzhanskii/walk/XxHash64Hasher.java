@@ -0,0 +1,129 @@
+package ru.ifmo.rain.dolzhanskii.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Streaming XXH64 with zero seed, consuming input in 32-byte stripes of four little-endian words
+class XxHash64Hasher implements FileHasher {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE_SIZE = 32;
+
+    @Override
+    public String getName() {
+        return "xxhash64";
+    }
+
+    @Override
+    public int getDigestLength() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public Digest newDigest() {
+        return new XxHash64Digest();
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME_2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME_1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        accumulator ^= round(0, value);
+        return accumulator * PRIME_1 + PRIME_4;
+    }
+
+    private static class XxHash64Digest implements Digest {
+        private final ByteBuffer pending = ByteBuffer.allocate(STRIPE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long v1 = PRIME_1 + PRIME_2;
+        private long v2 = PRIME_2;
+        private long v3 = 0;
+        private long v4 = -PRIME_1;
+        private long length;
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ByteBuffer input = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            length += input.remaining();
+            buffer.position(buffer.limit());
+
+            if (pending.position() > 0) {
+                while (pending.hasRemaining() && input.hasRemaining()) {
+                    pending.put(input.get());
+                }
+                if (pending.hasRemaining()) {
+                    return;
+                }
+                stripe(pending, 0);
+                pending.clear();
+            }
+
+            int position = input.position();
+            int limit = input.limit();
+            long v1 = this.v1, v2 = this.v2, v3 = this.v3, v4 = this.v4;
+            for (; position + STRIPE_SIZE <= limit; position += STRIPE_SIZE) {
+                v1 = round(v1, input.getLong(position));
+                v2 = round(v2, input.getLong(position + 8));
+                v3 = round(v3, input.getLong(position + 16));
+                v4 = round(v4, input.getLong(position + 24));
+            }
+            this.v1 = v1;
+            this.v2 = v2;
+            this.v3 = v3;
+            this.v4 = v4;
+
+            input.position(position);
+            pending.put(input);
+        }
+
+        private void stripe(ByteBuffer buffer, int position) {
+            v1 = round(v1, buffer.getLong(position));
+            v2 = round(v2, buffer.getLong(position + 8));
+            v3 = round(v3, buffer.getLong(position + 16));
+            v4 = round(v4, buffer.getLong(position + 24));
+        }
+
+        @Override
+        public byte[] finish() {
+            long hash;
+            if (length >= STRIPE_SIZE) {
+                hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                        + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                hash = mergeRound(hash, v1);
+                hash = mergeRound(hash, v2);
+                hash = mergeRound(hash, v3);
+                hash = mergeRound(hash, v4);
+            } else {
+                hash = v3 + PRIME_5;
+            }
+            hash += length;
+
+            ByteBuffer tail = pending.flip();
+            while (tail.remaining() >= Long.BYTES) {
+                hash ^= round(0, tail.getLong());
+                hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+            }
+            if (tail.remaining() >= Integer.BYTES) {
+                hash ^= Integer.toUnsignedLong(tail.getInt()) * PRIME_1;
+                hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+            }
+            while (tail.hasRemaining()) {
+                hash ^= Byte.toUnsignedLong(tail.get()) * PRIME_5;
+                hash = Long.rotateLeft(hash, 11) * PRIME_1;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= PRIME_2;
+            hash ^= hash >>> 29;
+            hash *= PRIME_3;
+            hash ^= hash >>> 32;
+
+            return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+        }
+    }
+}